@@ -1,137 +1,246 @@
 package qirkat;
 
-import java.util.ArrayList;
-import static qirkat.PieceColor.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-/** A Player that computes its own moves.
+import static qirkat.MoveCode.NONE;
+
+/** A Player that computes its own moves.  With more than one thread, it
+ *  uses "Lazy SMP" by default: helper threads run the same
+ *  iterative-deepening search as the main thread, alternately starting
+ *  one ply deeper, and all share one transposition table, through which
+ *  each benefits from the others' work.  The main thread alone watches
+ *  the budget and chooses the move.  Alternatively (see
+ *  Game.splitSearch), the threads split a single search tree among them,
+ *  as described in ParallelSearch.
+ *
+ *  When pondering (see Game.ponder), an AI playing a manual player keeps
+ *  searching in the background after it moves, while its opponent
+ *  thinks: it searches the position after the reply it expects (the
+ *  second move of its principal variation), or, if it expects none, its
+ *  opponent's position.  Either way the results go into the
+ *  transposition table.  If the opponent then makes the expected reply,
+ *  the AI's search resumes at the depth the ponder search reached.
  *  @author Lily Vittayarukskul
  */
 class AI extends Player {
 
-    /** Maximum minimax search depth before going to static evaluation. */
-    private static final int MAX_DEPTH = 5;
-    /** A position magnitude indicating a win (for white if positive, black
-     *  if negative). */
-    private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
-    /** A magnitude greater than a normal value. */
-    private static final int INFTY = Integer.MAX_VALUE;
+    /** Default time budget for each move, in milliseconds. */
+    static final int DEFAULT_MOVE_TIME = 250;
+
+    /** Longest principal variation reconstructed from the transposition
+     *  table. */
+    private static final int MAX_PV_LENGTH = 32;
 
     /** A new AI for GAME that will play MYCOLOR. */
     AI(Game game, PieceColor myColor) {
         super(game, myColor);
+        _table = new TranspositionTable(game.hashMegabytes());
+        _moveTime = game.moveTime();
+        _nodeLimit = game.nodeLimit();
+        _ponder = game.ponder() && game.isManual(myColor.opposite());
+        _tablebase = game.tablebase();
+        _book = game.openingBook();
+        Evaluator evaluator = game.evaluator();
+        _ponderer = _ponder
+            ? new Searcher(_table, _tablebase, evaluator,
+                           _stopPondering::get)
+            : null;
+        if (game.splitSearch() && game.threads() > 1) {
+            _parallel = new ParallelSearch(_table, _tablebase, evaluator,
+                                           game.threads());
+            _searchers = new Searcher[0];
+        } else {
+            _parallel = null;
+            _searchers = new Searcher[Math.max(1, game.threads())];
+            for (int i = 0; i < _searchers.length; i += 1) {
+                _searchers[i] = new Searcher(_table, _tablebase, evaluator,
+                                             _stopHelpers::get);
+            }
+        }
     }
 
     @Override
     Move myMove() {
         Main.startTiming();
-        findMove();
-        Move move = _lastFoundMove;
+        findMove(Math.max(1, stopPondering()));
+        Move move = MoveCode.toMove(_lastFoundMove);
         System.out.println(myColor() + " moves "
                 + move.toString() + ".");
         Main.endTiming();
+        startPondering();
         return move;
     }
 
-    /** Return a move for me from the current position, assuming there
-     *  is a move. */
-    private Move findMove() {
-        Board b = new Board(board());
-        if (myColor() == WHITE) {
-            findMove(b, MAX_DEPTH, 1, -INFTY, INFTY);
-        } else {
-            findMove(b, MAX_DEPTH, -1, -INFTY, INFTY);
+    @Override
+    void endGame() {
+        stopPondering();
+        if (_parallel != null) {
+            _parallel.shutdown();
         }
-        return _lastFoundMove;
     }
 
-    /** The move found by the last call to one of the ...FindMove methods
-     *  below. */
-    private Move _lastFoundMove;
-
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _lastFoundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _lastMoveFound. */
-    private int findMove(Board board, int depth, int sense,
-                         int alpha, int beta) {
-
-        if ((depth == 0) || board.gameOver()) {
-            return staticScore(board);
+    /** Return a move for me from the current position, assuming there
+     *  is a move, and record it in _lastFoundMove.  The search starts at
+     *  depth FIRSTDEPTH.  There is no search at all when there is only
+     *  one legal move, or when the position is in the opening book or the
+     *  tablebase. */
+    private long findMove(int firstDepth) {
+        MoveList legal = board().legalMoves();
+        if (legal.size() == 1) {
+            _lastFoundMove = legal.get(0);
+            return _lastFoundMove;
+        }
+        long booked = _book == null ? NONE : _book.move(board());
+        if (booked != NONE) {
+            _lastFoundMove = booked;
+            return _lastFoundMove;
+        } else if (_tablebase != null && _tablebase.covers(board())) {
+            _lastFoundMove = _tablebase.bestMove(board());
+            return _lastFoundMove;
+        }
+        _table.newSearch();
+        if (_parallel != null) {
+            _lastFoundMove =
+                _parallel.search(new Board(board()), firstDepth, _moveTime,
+                                 _nodeLimit);
+            return _lastFoundMove;
         }
-        if (sense == 1) {
-            int tempAlpha = -INFTY;
-            ArrayList<Move> moves = board.getMoves();
-            for (Move move : moves) {
-                if (board.legalMove(move)) {
-                    board.makeMove(move);
-                    Board b = new Board(board);
-                    tempAlpha = findMove(b, depth - 1, -1, alpha, beta);
-                }
-                if (tempAlpha >= alpha) {
-                    _lastFoundMove = move;
-                    alpha = tempAlpha;
-                }
-                if (tempAlpha >= beta) {
-                    break;
-                }
+        _stopHelpers.set(false);
+        Thread[] helpers = new Thread[_searchers.length - 1];
+        for (int i = 0; i < helpers.length; i += 1) {
+            Searcher helper = _searchers[i + 1];
+            Board board = new Board(board());
+            int depth = firstDepth + (i + 1) % 2;
+            helpers[i] = new Thread(() -> helper.search(board, legal, depth,
+                                                        Long.MAX_VALUE, 0));
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+        _lastFoundMove =
+            _searchers[0].search(new Board(board()), legal, firstDepth,
+                                 _moveTime, _nodeLimit);
+        _stopHelpers.set(true);
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
             }
-            return alpha;
         }
+        return _lastFoundMove;
+    }
 
-        if (sense == -1) {
-            int tempBeta = INFTY;
-            ArrayList<Move> moves = board.getMoves();
-            for (Move move : moves) {
-                if (board.legalMove(move)) {
-                    board.makeMove(move);
-                    Board b = new Board(board);
-                    tempBeta = findMove(b, depth - 1, 1, alpha, beta);
-                }
-                if (tempBeta <= beta) {
-                    _lastFoundMove = move;
-                    beta = tempBeta;
-                }
-                if (tempBeta <= alpha) {
-                    break;
-                }
+    /** If I am pondering, start searching in the background the position
+     *  after my move _lastFoundMove and the reply I expect to it, if any,
+     *  or else my opponent's position. */
+    private void startPondering() {
+        if (!_ponder) {
+            return;
+        }
+        Board board = new Board(board());
+        board.makeMove(_lastFoundMove);
+        MoveList line = principalVariation();
+        _ponderReply = NONE;
+        if (line.size() > 1 && line.get(0) == _lastFoundMove) {
+            _ponderReply = line.get(1);
+        }
+        if (board.legalMoves().isEmpty()) {
+            return;
+        } else if (board.legalMove(_ponderReply)) {
+            board.makeMove(_ponderReply);
+            if (board.legalMoves().isEmpty()) {
+                return;
             }
-            return beta;
+        } else {
+            _ponderReply = NONE;
         }
-        return staticScore(board);
+        _ponderKey = TranspositionTable.key(board);
+        MoveList legal = new MoveList();
+        legal.addAll(board.legalMoves());
+        _table.newSearch();
+        _stopPondering.set(false);
+        _ponderThread = new Thread(() -> _ponderer.search(board, legal, 1,
+                                                          Long.MAX_VALUE, 0));
+        _ponderThread.setDaemon(true);
+        _ponderThread.start();
     }
 
-    /** Return a heuristic value for BOARD. */
-    private int staticScore(Board board) {
-        int score = 0;
-        if (board.gameOver()) {
-            if (board.whoseMove().opposite().equals(myColor())) {
-                return WINNING_VALUE;
-            } else {
-                return -WINNING_VALUE;
-            }
+    /** Stop my background search, if any.  Return the depth it completed
+     *  if it was searching the current position (a "ponder hit"), and
+     *  otherwise 0. */
+    private int stopPondering() {
+        if (_ponderThread == null) {
+            return 0;
+        }
+        _stopPondering.set(true);
+        try {
+            _ponderThread.join();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
         }
+        _ponderThread = null;
+        if (_ponderReply != NONE
+            && _ponderKey == TranspositionTable.key(board())) {
+            return _ponderer.completedDepth();
+        }
+        return 0;
+    }
 
-        if (myColor().equals(PieceColor.WHITE)) {
-            for (int i = 0; i < Move.MAX_INDEX; i++) {
-                if (board.get(i).equals(PieceColor.WHITE)) {
-                    score += 1;
-                }
-                if (board.get(i).equals(PieceColor.BLACK)) {
-                    score += -1;
-                }
-            }
-        } else {
-            for (int i = 0; i < Move.MAX_INDEX; i++) {
-                if (board.get(i).equals(PieceColor.BLACK)) {
-                    score += 1;
-                }
-                if (board.get(i).equals(PieceColor.WHITE)) {
-                    score += -1;
-                }
-            }
+    /** Return the principal variation found by my last search: the line
+     *  of play it expects, starting with my move. */
+    MoveList principalVariation() {
+        if (_parallel == null) {
+            return _searchers[0].principalVariation();
+        }
+        MoveList result = new MoveList();
+        Board board = new Board(board());
+        long move = _lastFoundMove;
+        while (move != NONE && result.size() < MAX_PV_LENGTH
+               && board.legalMove(move)) {
+            result.add(move);
+            board.makeMove(move);
+            move = _table.move(TranspositionTable.key(board));
         }
-        return score;
+        return result;
     }
+
+    /** The code (see MoveCode) of the move found by the last call to
+     *  findMove. */
+    private long _lastFoundMove;
+
+    /** Time budget for each move, in milliseconds. */
+    private final long _moveTime;
+    /** Node budget for each move, or 0 if unlimited. */
+    private final long _nodeLimit;
+
+    /** Results of searching positions, kept from one move to the next and
+     *  shared by all my threads. */
+    private final TranspositionTable _table;
+    /** Exact results of positions with few pieces, or null. */
+    private final Tablebase _tablebase;
+    /** Moves for positions near the start of the game, or null. */
+    private final OpeningBook _book;
+
+    /** The searches run by each of my threads, the main thread's first,
+     *  when they do not split the search tree. */
+    private final Searcher[] _searchers;
+    /** The search that my threads split among them, or null. */
+    private final ParallelSearch _parallel;
+
+    /** Set to stop the helper threads once the main thread is done. */
+    private final AtomicBoolean _stopHelpers = new AtomicBoolean();
+
+    /** True iff I search on my opponent's time. */
+    private final boolean _ponder;
+    /** The search I run on my opponent's time. */
+    private final Searcher _ponderer;
+    /** The thread running _ponderer, or null if I am not pondering. */
+    private Thread _ponderThread;
+    /** Set to stop _ponderThread. */
+    private final AtomicBoolean _stopPondering = new AtomicBoolean();
+    /** The reply I expect to my last move, or NONE if I expect none. */
+    private long _ponderReply;
+    /** The key (see TranspositionTable.key) of the position I am
+     *  pondering. */
+    private long _ponderKey;
 }
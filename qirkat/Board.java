@@ -2,9 +2,9 @@
 package qirkat;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Formatter;
-import java.util.Observable;
-import java.util.Observer;
+import java.util.Random;
 
 import static qirkat.PieceColor.*;
 import static qirkat.Move.*;
@@ -18,15 +18,17 @@ import static qirkat.Move.*;
  *  counting from 0).
  *
  *  Moves on this board are denoted by Moves.
+ *
+ *  A Board notifies its Listeners whenever it is cleared, set, or has a
+ *  move made or undone.  A Board with no listeners (such as a copy made
+ *  for a search) pays only a null test for this, and uses no locks.
  *  @author Lily Vittayarukskul
  */
-class Board extends Observable {
+class Board {
 
     /** A new, cleared board at the start of the game. */
     Board() {
-        _contents = new PieceColor[Move.SIDE][Move.SIDE];
         clear();
-        _validMoves = new ValidMoves();
     }
 
     /** A copy of B. */
@@ -43,7 +45,6 @@ class Board extends Observable {
     /** Clear me to my starting state, with pieces in their initial
      *  positions. */
     void clear() {
-        _whoseMove = WHITE;
         _gameOver = false;
 
         setPieces("w w w w w "
@@ -52,8 +53,7 @@ class Board extends Observable {
                 + "b b b b b "
                 + "b b b b b " , WHITE);
 
-        setChanged();
-        notifyObservers();
+        notifyListeners();
     }
 
 
@@ -65,38 +65,18 @@ class Board extends Observable {
 
     /** Copy B into me. */
     private void internalCopy(Board b) {
-        _contents = new PieceColor[Move.SIDE][Move.SIDE];
-
-        for (int i = 0; i <= MAX_INDEX; i++) {
-            switch (b.get(i)) {
-            case WHITE:
-                set(i, WHITE);
-                break;
-            case BLACK:
-                set(i, BLACK);
-                break;
-            case EMPTY:
-                set(i, EMPTY);
-                break;
-            default:
-                break;
-            }
-        }
-        switch (b.whoseMove()) {
-        case WHITE:
-            _whoseMove = WHITE;
-            break;
-        case BLACK:
-            _whoseMove = BLACK;
-            break;
-        default:
-            break;
-        }
-        if (b.gameOver()) {
-            _gameOver = true;
-        } else {
-            _gameOver = false;
-        }
+        clearHistory();
+        _whitePieces = b._whitePieces;
+        _blackPieces = b._blackPieces;
+        _whoseMove = b._whoseMove;
+        _gameOver = b._gameOver;
+        _hash = b._hash;
+        _whiteLastMove = b._whiteLastMove;
+        _blackLastMove = b._blackLastMove;
+        _squareValues = b._squareValues;
+        System.arraycopy(b._squareSums, 0, _squareSums, 0,
+                         _squareSums.length);
+        _version += 1;
     }
 
     /** Set my contents as defined by STR.  STR consists of 25 characters,
@@ -131,9 +111,39 @@ class Board extends Observable {
             }
         }
 
+        if (_whoseMove != nextMove) {
+            _whoseMove = nextMove;
+            _hash ^= BLACK_TO_MOVE_KEY;
+        }
+        clearHistory();
+        _whiteLastMove = _blackLastMove = MoveCode.NONE;
+        _version += 1;
+        notifyListeners();
+    }
+
+    /** Set my contents to the pieces in the masks WHITE and BLACK (as for
+     *  pieces()), with NEXTMOVE to move and with WHITELAST and BLACKLAST
+     *  the codes (see MoveCode) of the last moves made by each player, or
+     *  MoveCode.NONE.  Used to set up positions for analysis, so does not
+     *  notify listeners. */
+    void setPieces(int white, int black, PieceColor nextMove,
+                   long whiteLast, long blackLast) {
+        assert (white & black) == 0;
+        _whitePieces = white;
+        _blackPieces = black;
+        Arrays.fill(_squareSums, 0);
+        sum(WHITE, white, 1);
+        sum(BLACK, black, 1);
         _whoseMove = nextMove;
-        setChanged();
-        notifyObservers();
+        _hash = hashOf(WHITE_KEYS, white) ^ hashOf(BLACK_KEYS, black);
+        if (nextMove == BLACK) {
+            _hash ^= BLACK_TO_MOVE_KEY;
+        }
+        _gameOver = false;
+        clearHistory();
+        _whiteLastMove = whiteLast;
+        _blackLastMove = blackLast;
+        _version += 1;
     }
 
     /** Return true iff the game is over: i.e., if the current player has
@@ -145,7 +155,13 @@ class Board extends Observable {
     /** Return the current contents of the square at linearized index K. */
     PieceColor get(int k) {
         assert validSquare(k);
-        return _contents[k % Move.SIDE][k / Move.SIDE];
+        int bit = 1 << k;
+        if ((_whitePieces & bit) != 0) {
+            return WHITE;
+        } else if ((_blackPieces & bit) != 0) {
+            return BLACK;
+        }
+        return EMPTY;
     }
 
     /** Set get(C, R) to V, where 'a' <= C <= 'e', and
@@ -158,48 +174,194 @@ class Board extends Observable {
     /** Set get(K) to V, where K is the linearized index of a square. */
     private void set(int k, PieceColor v) {
         assert validSquare(k);
-        _contents[k % Move.SIDE][k / Move.SIDE] = v;
+        _version += 1;
+        int bit = 1 << k;
+        if ((_whitePieces & bit) != 0) {
+            _hash ^= WHITE_KEYS[k];
+            sum(WHITE, bit, -1);
+        } else if ((_blackPieces & bit) != 0) {
+            _hash ^= BLACK_KEYS[k];
+            sum(BLACK, bit, -1);
+        }
+        _whitePieces &= ~bit;
+        _blackPieces &= ~bit;
+        if (v == WHITE) {
+            _whitePieces |= bit;
+            _hash ^= WHITE_KEYS[k];
+            sum(WHITE, bit, 1);
+        } else if (v == BLACK) {
+            _blackPieces |= bit;
+            _hash ^= BLACK_KEYS[k];
+            sum(BLACK, bit, 1);
+        }
     }
 
-    /** Return all valid moves hashmaps.*/
-    public ValidMoves validMoves() {
-        return _validMoves;
+    /** Add DELTA times the value of a piece of COLOR on each square in the
+     *  mask SQUARES to the square sum of COLOR's pieces, if there are
+     *  square values. */
+    private void sum(PieceColor color, int squares, int delta) {
+        if (_squareValues == null) {
+            return;
+        }
+        int side = color == WHITE ? 0 : 1;
+        for (; squares != 0; squares &= squares - 1) {
+            int k = Integer.numberOfTrailingZeros(squares);
+            _squareSums[side] += delta * _squareValues[ownSquare(k, color)];
+        }
     }
 
-    /** Return true iff MOV is legal on the current board. */
-    boolean legalMove(Move mov) {
+    /** Return the number of COLOR's pieces. */
+    int pieceCount(PieceColor color) {
+        return Integer.bitCount(pieces(color));
+    }
 
-        if (!mov.isJump()) {
-            if (jumpPossible()) {
-                return false;
-            } else {
-                Move lastMove = validMoves().getLastMove(whoseMove());
-                if (lastMove != null) {
-                    if ((lastMove.fromIndex() == mov.toIndex())
-                            && ((lastMove.toIndex() == mov.fromIndex()))) {
-                        return false;
-                    }
-                }
-                ArrayList<Move> moves = new ArrayList<>();
-                getMoves(moves, mov.fromIndex());
-                for (Move move:moves) {
-                    if (move.equals(mov)) {
-                        return true;
-                    }
-                }
+    /** Use VALUES, indexed by square as seen by the owner of a piece (see
+     *  ownSquare), as the values of pieces for squareSum, or none if
+     *  VALUES is null.  VALUES is shared, not copied, and must not change
+     *  while I use it.  My copies use the same values. */
+    void setSquareValues(int[] values) {
+        _squareValues = values;
+        Arrays.fill(_squareSums, 0);
+        if (values != null) {
+            sum(WHITE, _whitePieces, 1);
+            sum(BLACK, _blackPieces, 1);
+        }
+    }
+
+    /** Return the values last given to setSquareValues, or null. */
+    int[] squareValues() {
+        return _squareValues;
+    }
+
+    /** Return the sum of the values (see setSquareValues) of COLOR's
+     *  pieces on their squares, or 0 if there are no values.  The sums are
+     *  kept up to date as moves are made and unmade, so that evaluations
+     *  may use them freely. */
+    int squareSum(PieceColor color) {
+        return _squareSums[color == WHITE ? 0 : 1];
+    }
+
+    /** Return the number of the square with linearized index K as seen by
+     *  the player COLOR: the board is turned around for black, so that
+     *  each player's home row is row 0. */
+    static int ownSquare(int k, PieceColor color) {
+        return color == WHITE ? k : SIDE * SIDE - 1 - k;
+    }
+
+    /** Return the set of squares holding pieces of color COLOR, as a mask
+     *  whose bit K is set iff get(K) == COLOR.  For COLOR == EMPTY, the
+     *  set of empty squares. */
+    int pieces(PieceColor color) {
+        switch (color) {
+        case WHITE:
+            return _whitePieces;
+        case BLACK:
+            return _blackPieces;
+        default:
+            return ~(_whitePieces | _blackPieces) & ALL_SQUARES;
+        }
+    }
+
+    /** Return a compact key that identifies my position: the white and
+     *  black piece masks together with the player to move.  Two boards
+     *  with the same contents and player to move have the same key. */
+    long positionKey() {
+        return ((long) _whitePieces << (SIDE * SIDE + 1))
+            | ((long) _blackPieces << 1)
+            | (_whoseMove == BLACK ? 1 : 0);
+    }
+
+    /** Return the Zobrist hash of my position: a 64-bit value that depends
+     *  only on my contents and the player to move, and which is maintained
+     *  incrementally as the position changes. */
+    long hashKey() {
+        return _hash;
+    }
+
+    /** Return the number of earlier positions in my move history that
+     *  are the same as the current one (as judged by hashKey()).  Only
+     *  sideways moves can be reversed, so the scan stops at the most
+     *  recent capture or forward move, which is usually very near. */
+    int repetitions() {
+        int count = 0;
+        for (int i = _historySize - 1; i >= 0; i -= 1) {
+            long mov = _moveHistory[i];
+            if (mov == MoveCode.NONE) {
+                continue;
             }
-        } else {
-            if (mov.isJump()) {
-                ArrayList<Move> jumpMoves = new ArrayList<>();
-                getJumps(jumpMoves, mov.fromIndex());
-                for (Move move:jumpMoves) {
-                    if (move.equals(mov)) {
-                        return true;
-                    }
-                }
+            if (MoveCode.isJump(mov)
+                || ValidMoves.DIR_ROW[MoveCode.direction(mov, 0)] != 0) {
+                break;
+            }
+            if ((_historySize - i) % 2 == 0 && _hashHistory[i] == _hash) {
+                count += 1;
             }
         }
-        return false;
+        return count;
+    }
+
+    /** An object to be notified of changes to a Board. */
+    interface Listener {
+        /** Respond to a change in BOARD. */
+        void changed(Board board);
+    }
+
+    /** Arrange for LISTENER to be notified whenever I change. */
+    void addListener(Listener listener) {
+        if (_listeners == null) {
+            _listeners = new ArrayList<>();
+        }
+        _listeners.add(listener);
+    }
+
+    /** Notify my listeners, if any, that I have changed. */
+    void notifyListeners() {
+        if (_listeners != null) {
+            for (Listener listener : _listeners) {
+                listener.changed(this);
+            }
+        }
+    }
+
+    /** Return the code (see MoveCode) of the last move made on this
+     *  board by player COLOR, or MoveCode.NONE if it has made none since
+     *  the board was last cleared or set. */
+    long lastMove(PieceColor color) {
+        return color == WHITE ? _whiteLastMove : _blackLastMove;
+    }
+
+    /** Record MOV as the last move made by player COLOR. */
+    private void setLastMove(PieceColor color, long mov) {
+        if (color == WHITE) {
+            _whiteLastMove = mov;
+        } else {
+            _blackLastMove = mov;
+        }
+    }
+
+    /** Return true iff MOV is legal on the current board. */
+    boolean legalMove(Move mov) {
+        return legalMove(MoveCode.of(mov));
+    }
+
+    /** Return true iff the move whose code (see MoveCode) is MOV is legal
+     *  on the current board. */
+    boolean legalMove(long mov) {
+        return mov != MoveCode.NONE && legalMoves().contains(mov);
+    }
+
+    /** Return the codes of all legal moves from the current position.
+     *  The list is computed once per position and kept until the position
+     *  changes, so game-over checks, legality checks, and players may all
+     *  consult it freely.  It must not be modified. */
+    MoveList legalMoves() {
+        if (_legalVersion != _version) {
+            _legalMoves.clear();
+            getMoves(_legalMoves);
+            _legalMoves.index();
+            _legalVersion = _version;
+        }
+        return _legalMoves;
     }
 
     /** Return a list of all legal moves from the current position. */
@@ -211,95 +373,94 @@ class Board extends Observable {
 
     /** Add all legal moves from the current position to MOVES. */
     void getMoves(ArrayList<Move> moves) {
-        if (gameOver()) {
-            return;
+        MoveList legal = legalMoves();
+        for (int i = 0; i < legal.size(); i += 1) {
+            moves.add(MoveCode.toMove(legal.get(i)));
         }
-        for (int k = 0; k <= MAX_INDEX; k += 1) {
-            if (jumpPossible(k)) {
-                getJumps(moves, k);
+    }
+
+    /** Add the codes (see MoveCode) of all legal moves from the current
+     *  position to MOVES.  Creates no objects unless MOVES must grow, and
+     *  does not modify this Board, so that any number of threads may use
+     *  it at once on the same Board (each with its own MOVES). */
+    void getMoves(MoveList moves) {
+        int start = moves.size();
+        getCaptures(moves);
+        if (moves.size() == start && !gameOver()) {
+            for (int rest = pieces(whoseMove()); rest != 0;
+                 rest &= rest - 1) {
+                getMoves(moves, Integer.numberOfTrailingZeros(rest));
             }
         }
-        if (moves.isEmpty()) {
-            for (int k = 0; k <= MAX_INDEX; k += 1) {
-                getMoves(moves, k);
-            }
+    }
+
+    /** Add the codes (see MoveCode) of all legal captures from the current
+     *  position to MOVES.  Since capturing is mandatory, these are all the
+     *  legal moves when there are any.  Like getMoves(MoveList), creates
+     *  no objects unless MOVES must grow, and does not modify this
+     *  Board. */
+    void getCaptures(MoveList moves) {
+        if (gameOver()) {
+            return;
+        }
+        for (int rest = pieces(whoseMove()); rest != 0; rest &= rest - 1) {
+            getJumps(moves, Integer.numberOfTrailingZeros(rest));
         }
     }
 
     /** Add all legal non-capturing moves from the position
-     *  with linearized index K to MOVES. */
-    private void getMoves(ArrayList<Move> moves, int k) {
-        if (whoseMove() == WHITE) {
-            int[] movesList = validMoves().get(
-                    validMoves().nonJumpMovesWHITE(), k);
-            if (get(k).equals(whoseMove())) {
-                for (int i = 0; i < movesList.length; i++) {
-                    if (get(movesList[i]) == EMPTY) {
-                        moves.add(move(col(k), row(k), col(movesList[i]),
-                                row(movesList[i])));
-                    }
-                }
-            }
+     *  with linearized index K to MOVES.  A player may not reverse its
+     *  own last non-capturing move. */
+    private void getMoves(MoveList moves, int k) {
+        int empty = pieces(EMPTY);
+        if ((pieces(whoseMove()) & (1 << k)) == 0
+            || (ValidMoves.stepMasks(whoseMove())[k] & empty) == 0) {
+            return;
         }
-        if (whoseMove() == BLACK) {
-            int[] movesList = validMoves().get(
-                    validMoves().nonJumpMovesBLACK(), k);
-            if (get(k).equals(whoseMove())) {
-
-                for (int i = 0; i < movesList.length; i++) {
-                    if (get(movesList[i]) == EMPTY) {
-                        moves.add(move(col(k), row(k), col(movesList[i]),
-                                row(movesList[i])));
-                    }
-                }
+        int[] targets = ValidMoves.steps(whoseMove())[k],
+            dirs = ValidMoves.stepDirections(whoseMove())[k];
+        long last = lastMove(whoseMove());
+        int forbidden = -1;
+        if (last != MoveCode.NONE && !MoveCode.isJump(last)
+            && MoveCode.to(last) == k) {
+            forbidden = MoveCode.from(last);
+        }
+        for (int i = 0; i < targets.length; i += 1) {
+            if ((empty & (1 << targets[i])) != 0 && targets[i] != forbidden) {
+                moves.add(MoveCode.step(k, dirs[i]));
             }
         }
     }
 
     /** Add all legal captures from the position with linearized index K
      *  to MOVES. */
-    private void getJumps(ArrayList<Move> moves, int k) {
-        Move movePath = null;
-        getJumpsH(k, k, movePath, moves);
-    }
-
-    /** Returns a unique move PATH from current linearized position K,
-     * using PREVK and PATH to update MOVES. */
-    private void getJumpsH(int prevK, int k, Move path, ArrayList<Move> moves) {
-        Move movePath = move(path, move(col(prevK),
-                row(prevK), col(k), row(k)));
-            if (!jumpPossible(k)) {
-            moves.add(movePath);
-            set(k, EMPTY);
-            preJumpBoard(movePath);
-            return;
-        } else {
-            int[] movesList = validMoves().get(
-                    validMoves().jumpMoves(), k);
-            for (int i = 0; i < movesList.length; i += 2) {
-                if ((get(k).equals(whoseMove()))
-                        && (get(movesList[i]).equals(whoseMove().opposite()))
-                        && (get(movesList[i + 1]) == EMPTY)) {
-                    set(k, EMPTY);
-                    set(movesList[i], EMPTY);
-                    set(movesList[i + 1], whoseMove());
-                    getJumpsH(k, movesList[i + 1], movePath, moves);
+    private void getJumps(MoveList moves, int k) {
+        getJumpsH(k, MoveCode.jumpStart(k), pieces(whoseMove().opposite()),
+                  pieces(EMPTY), moves);
+    }
+
+    /** Add to MOVES all maximal continuations of the capture PATH, which
+     *  has brought the moving piece to K.  OPP and EMPTY are the opposing
+     *  pieces and the empty squares (not counting K) as they stand after
+     *  PATH, so the Board itself is never modified. */
+    private static void getJumpsH(int k, long path, int opp, int empty,
+                                  MoveList moves) {
+        boolean extended = false;
+        if ((ValidMoves.JUMP_OVER_MASKS[k] & opp) != 0) {
+            int[] over = ValidMoves.JUMP_OVER[k], to = ValidMoves.JUMP_TO[k],
+                dirs = ValidMoves.JUMP_DIRS[k];
+            for (int i = 0; i < over.length; i += 1) {
+                int overBit = 1 << over[i], toBit = 1 << to[i];
+                if ((opp & overBit) != 0 && (empty & toBit) != 0) {
+                    extended = true;
+                    getJumpsH(to[i], MoveCode.extend(path, dirs[i]),
+                              opp & ~overBit,
+                              (empty | (1 << k) | overBit) & ~toBit, moves);
                 }
             }
         }
-    }
-
-    /** Restore pieces that were jumped over in a MOVE.*/
-    private void preJumpBoard(Move move) {
-        set(move.fromIndex(), whoseMove());
-        Move nextMov = move;
-        while (nextMov.isJump()) {
-            set(nextMov.jumpedIndex(), whoseMove().opposite());
-            if (nextMov.jumpTail() != null) {
-                nextMov = nextMov.jumpTail();
-            } else {
-                break;
-            }
+        if (!extended && MoveCode.legs(path) > 0) {
+            moves.add(path);
         }
     }
 
@@ -321,12 +482,15 @@ class Board extends Observable {
     /** Return true iff a jump is possible for a piece at position with
      *  linearized index K. */
     boolean jumpPossible(int k) {
-        int[] movesList = validMoves().get(
-                validMoves().jumpMoves(), k);
-        for (int i = 0; i < movesList.length; i += 2) {
-            if ((get(k).equals(whoseMove()))
-                    && (get(movesList[i]).equals(whoseMove().opposite()))
-                    && (get(movesList[i + 1]) == EMPTY)) {
+        int opp = pieces(whoseMove().opposite());
+        if ((pieces(whoseMove()) & (1 << k)) == 0
+            || (ValidMoves.JUMP_OVER_MASKS[k] & opp) == 0) {
+            return false;
+        }
+        int empty = pieces(EMPTY);
+        int[] over = ValidMoves.JUMP_OVER[k], to = ValidMoves.JUMP_TO[k];
+        for (int i = 0; i < over.length; i += 1) {
+            if ((opp & (1 << over[i])) != 0 && (empty & (1 << to[i])) != 0) {
                 return true;
             }
         }
@@ -335,8 +499,8 @@ class Board extends Observable {
 
     /** Return true iff a jump is possible from the current board. */
     boolean jumpPossible() {
-        for (int k = 0; k <= MAX_INDEX; k += 1) {
-            if (jumpPossible(k)) {
+        for (int rest = pieces(whoseMove()); rest != 0; rest &= rest - 1) {
+            if (jumpPossible(Integer.numberOfTrailingZeros(rest))) {
                 return true;
             }
         }
@@ -361,35 +525,122 @@ class Board extends Observable {
         makeMove(Move.move(c0, r0, c1, r1, next));
     }
 
-    /** Make the Move MOV on this Board, assuming it is legal. */
+    /** Make the Move MOV on this Board, assuming it is legal.  The move
+     *  may be retracted with unmakeMove. */
     void makeMove(Move mov) {
+        makeMove(MoveCode.of(mov));
+    }
+
+    /** Make the move whose code (see MoveCode) is MOV on this Board,
+     *  assuming it is legal.  The move may be retracted with
+     *  unmakeMove. */
+    void makeMove(long mov) {
         assert legalMove(mov);
-        validMoves().setLastMove(whoseMove(), mov);
-        if (mov.jumpTail() == null) {
-            set(mov.toIndex(), whoseMove());
-            set(mov.fromIndex(), EMPTY);
-            if (mov.jumpedIndex() != mov.toIndex()) {
-                set(mov.jumpedIndex(), EMPTY);
-            }
+        int captured = MoveCode.captured(mov);
+        int moved = (1 << MoveCode.from(mov)) ^ (1 << MoveCode.to(mov));
+        pushHistory(mov, captured);
+        setLastMove(whoseMove(), mov);
+        sum(whoseMove(), 1 << MoveCode.from(mov), -1);
+        sum(whoseMove(), 1 << MoveCode.to(mov), 1);
+        sum(whoseMove().opposite(), captured, -1);
+        if (whoseMove() == WHITE) {
+            _hash ^= hashOf(WHITE_KEYS, moved) ^ hashOf(BLACK_KEYS, captured);
+            _whitePieces ^= moved;
+            _blackPieces &= ~captured;
         } else {
-            Move nextMov = mov;
-            while (nextMov != null) {
-                set(nextMov.toIndex(), whoseMove());
-                set(nextMov.jumpedIndex(), EMPTY);
-                set(nextMov.fromIndex(), EMPTY);
-                nextMov = nextMov.jumpTail();
-            }
+            _hash ^= hashOf(BLACK_KEYS, moved) ^ hashOf(WHITE_KEYS, captured);
+            _blackPieces ^= moved;
+            _whitePieces &= ~captured;
         }
+        _hash ^= BLACK_TO_MOVE_KEY;
+        _version += 1;
+        _whoseMove = whoseMove().opposite();
 
-        setChanged();
-        notifyObservers();
+        notifyListeners();
+    }
+
+    /** Give the move to the other player without moving any piece, as if
+     *  the player to move had passed.  Passing is not legal in Qirkat;
+     *  searches use it to test whether the player to move is doing well
+     *  enough that even a free move for its opponent would not help.
+     *  Retracted by unmakeMove.  Does not notify listeners. */
+    void makeNullMove() {
+        pushHistory(MoveCode.NONE, 0);
+        _hash ^= BLACK_TO_MOVE_KEY;
+        _version += 1;
         _whoseMove = whoseMove().opposite();
     }
 
+    /** Retract the last move made by makeMove or makeNullMove, restoring
+     *  the pieces it captured and the previous last move of the player who
+     *  made it.
+     *  Assumes there is such a move.  Does not notify observers, so that
+     *  searches may use it freely; see undo. */
+    void unmakeMove() {
+        assert _historySize > 0;
+        _historySize -= 1;
+        long mov = _moveHistory[_historySize];
+        int captured = _capturedHistory[_historySize];
+        int moved = (1 << MoveCode.from(mov)) ^ (1 << MoveCode.to(mov));
+        _whoseMove = whoseMove().opposite();
+        _hash = _hashHistory[_historySize];
+        setLastMove(whoseMove(), _lastMoveHistory[_historySize]);
+        sum(whoseMove(), 1 << MoveCode.to(mov), -1);
+        sum(whoseMove(), 1 << MoveCode.from(mov), 1);
+        sum(whoseMove().opposite(), captured, 1);
+        if (whoseMove() == WHITE) {
+            _whitePieces ^= moved;
+            _blackPieces |= captured;
+        } else {
+            _blackPieces ^= moved;
+            _whitePieces |= captured;
+        }
+        _gameOver = false;
+        _version += 1;
+    }
+
+    /** Record MOV, which captures the pieces in the mask CAPTURED, on
+     *  the history used by unmakeMove. */
+    private void pushHistory(long mov, int captured) {
+        if (_moveHistory == null) {
+            _moveHistory = new long[INITIAL_HISTORY];
+            _lastMoveHistory = new long[INITIAL_HISTORY];
+            _capturedHistory = new int[INITIAL_HISTORY];
+            _hashHistory = new long[INITIAL_HISTORY];
+        } else if (_historySize == _moveHistory.length) {
+            int size = 2 * _historySize;
+            _moveHistory = Arrays.copyOf(_moveHistory, size);
+            _lastMoveHistory = Arrays.copyOf(_lastMoveHistory, size);
+            _capturedHistory = Arrays.copyOf(_capturedHistory, size);
+            _hashHistory = Arrays.copyOf(_hashHistory, size);
+        }
+        _moveHistory[_historySize] = mov;
+        _lastMoveHistory[_historySize] = lastMove(whoseMove());
+        _capturedHistory[_historySize] = captured;
+        _hashHistory[_historySize] = _hash;
+        _historySize += 1;
+    }
+
+    /** Return the exclusive or of the elements of KEYS selected by the
+     *  bits of MASK. */
+    private static long hashOf(long[] keys, int mask) {
+        long result = 0;
+        for (; mask != 0; mask &= mask - 1) {
+            result ^= keys[Integer.numberOfTrailingZeros(mask)];
+        }
+        return result;
+    }
+
+    /** Discard the history used by unmakeMove. */
+    private void clearHistory() {
+        _historySize = 0;
+    }
+
     /** Return true if game is over.*/
     boolean postcheckGameOver() {
-        if (getMoves().isEmpty()) {
+        if (legalMoves().isEmpty()) {
             _gameOver = true;
+            _version += 1;
             return true;
         } else {
             return false;
@@ -398,27 +649,26 @@ class Board extends Observable {
 
     /** Undo the last move, if any. */
     void undo() {
-        Move lastMove = validMoves().getLastMove(
-                whoseMove().opposite());
-        if (lastMove.isJump()) {
-            int i = 0;
-        } else {
-            while (lastMove != null) {
-                int i = 0;
-            }
+        if (_historySize > 0) {
+            unmakeMove();
+            notifyListeners();
         }
-
-
-        setChanged();
-        notifyObservers();
     }
 
-    /** Create the contents of the board. */
-    private PieceColor[][] _contents;
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Board)) {
+            return false;
+        }
+        Board b = (Board) obj;
+        return _whitePieces == b._whitePieces
+            && _blackPieces == b._blackPieces
+            && _whoseMove == b._whoseMove;
+    }
 
-    /** Return CONTENTS of board. */
-    PieceColor[][] contents() {
-        return _contents;
+    @Override
+    public int hashCode() {
+        return (int) (_hash ^ (_hash >>> Integer.SIZE));
     }
 
     @Override
@@ -437,7 +687,7 @@ class Board extends Observable {
             }
             outString += " ";
             for (int j = 0; j < Move.SIDE; j++) {
-                outString += " " + _contents[j][i].shortName();
+                outString += " " + get(j + i * Move.SIDE).shortName();
             }
             if (i == 0) {
                 if (legend) {
@@ -457,12 +707,67 @@ class Board extends Observable {
         return false;
     }
 
-    /** The class that contains hashmaps of all valid capture moves
-     * and non capture moves for white and black. */
-    private static ValidMoves _validMoves;
+    /** Mask of all squares on the board. */
+    static final int ALL_SQUARES = (1 << (SIDE * SIDE)) - 1;
+
+    /** The squares holding white and black pieces: bit K of each is set
+     *  iff the square with linearized index K holds a piece of that
+     *  color. */
+    private int _whitePieces, _blackPieces;
+
+    /** Values of pieces by square, as seen by their owners, or null. */
+    private int[] _squareValues;
+    /** The sums of _squareValues over the white and black pieces. */
+    private final int[] _squareSums = new int[2];
+
+    /** Initial capacity of the move history. */
+    private static final int INITIAL_HISTORY = 64;
+
+    /** The codes of the moves made on this board since it was last cleared
+     *  or set, oldest first. */
+    private long[] _moveHistory;
+    /** For each move in _moveHistory, the previous last move of the player
+     *  who made it. */
+    private long[] _lastMoveHistory;
+    /** For each move in _moveHistory, the mask of squares it captured. */
+    private int[] _capturedHistory;
+    /** For each move in _moveHistory, the value of hashKey() before it
+     *  was made. */
+    private long[] _hashHistory;
+    /** Number of moves in _moveHistory. */
+    private int _historySize;
+
+    /** The codes of the last moves made by white and black on this board
+     *  (MoveCode.NONE if none).  A player may not immediately reverse its
+     *  last non-capturing move.  Each board has its own, so that copies
+     *  used in a search do not disturb the game they were copied from. */
+    private long _whiteLastMove, _blackLastMove;
+
+    /** Seed for the Zobrist keys, fixed so that hash keys are the same
+     *  from one run to the next. */
+    private static final long ZOBRIST_SEED = 0x5eed_61bL;
+
+    /** Zobrist keys for a white or black piece on each square. */
+    private static final long[] WHITE_KEYS = new long[SIDE * SIDE],
+        BLACK_KEYS = new long[SIDE * SIDE];
+
+    /** Zobrist key contributed when black is to move. */
+    private static final long BLACK_TO_MOVE_KEY;
+
+    static {
+        Random keys = new Random(ZOBRIST_SEED);
+        for (int k = 0; k < SIDE * SIDE; k += 1) {
+            WHITE_KEYS[k] = keys.nextLong();
+            BLACK_KEYS[k] = keys.nextLong();
+        }
+        BLACK_TO_MOVE_KEY = keys.nextLong();
+    }
+
+    /** Zobrist hash of the current position (see hashKey()). */
+    private long _hash;
 
     /** Player that is on move. */
-    private PieceColor _whoseMove;
+    private PieceColor _whoseMove = WHITE;
 
     /** Set true when game ends. */
     private boolean _gameOver;
@@ -470,17 +775,25 @@ class Board extends Observable {
     /** Convenience value giving values of pieces at each ordinal position. */
     static final PieceColor[] PIECE_VALUES = PieceColor.values();
 
-    /** One cannot create arrays of ArrayList<Move>, so we introduce
-     *  a specialized private list type for this purpose. */
-    private static class MoveList extends ArrayList<Move> {
-    }
+    /** Objects to be notified when I change, or null if there are none.
+     *  Copies of a Board do not inherit its listeners. */
+    private ArrayList<Listener> _listeners;
+
+    /** Incremented whenever my position, history, or game-over status
+     *  changes. */
+    private long _version;
+
+    /** The legal moves in the position whose _version was _legalVersion. */
+    private final MoveList _legalMoves = new MoveList();
+    /** The value of _version for which _legalMoves was computed. */
+    private long _legalVersion = -1;
 
     /** A read-only view of a Board. */
-    private class ConstantBoard extends Board implements Observer {
+    private class ConstantBoard extends Board implements Listener {
         /** A constant view of this Board. */
         ConstantBoard() {
             super(Board.this);
-            Board.this.addObserver(this);
+            Board.this.addListener(this);
         }
 
         @Override
@@ -494,7 +807,28 @@ class Board extends Observable {
         }
 
         @Override
-        void makeMove(Move move) {
+        void makeMove(long move) {
+            assert false;
+        }
+
+        @Override
+        void makeNullMove() {
+            assert false;
+        }
+
+        @Override
+        void setPieces(int white, int black, PieceColor nextMove,
+                       long whiteLast, long blackLast) {
+            assert false;
+        }
+
+        @Override
+        void unmakeMove() {
+            assert false;
+        }
+
+        @Override
+        void setSquareValues(int[] values) {
             assert false;
         }
 
@@ -505,10 +839,9 @@ class Board extends Observable {
         }
 
         @Override
-        public void update(Observable obs, Object arg) {
-            super.copy((Board) obs);
-            setChanged();
-            notifyObservers(arg);
+        public void changed(Board board) {
+            super.copy(board);
+            notifyListeners();
         }
     }
 }
@@ -40,6 +40,218 @@ public class BoardTest {
         assertEquals(GAME1_BOARD, b0.toString());
     }
 
+    @Test
+    public void testPieces() {
+        Board b0 = new Board();
+        b0.setPieces("w---w ----- ----- ----- bb---", PieceColor.BLACK);
+        assertEquals(0x11, b0.pieces(PieceColor.WHITE));
+        assertEquals(0x300000, b0.pieces(PieceColor.BLACK));
+        assertEquals(Board.ALL_SQUARES & ~0x300011,
+                     b0.pieces(PieceColor.EMPTY));
+        Board b1 = new Board(b0);
+        assertEquals(b0.positionKey(), b1.positionKey());
+        b1.setPieces("w---w ----- ----- ----- bb---", PieceColor.WHITE);
+        assertNotEquals(b0.positionKey(), b1.positionKey());
+    }
+
+    @Test
+    public void testUnmakeJump() {
+        Board b0 = new Board();
+        b0.setPieces("----- -w--- -bbb- ----- -----", PieceColor.WHITE);
+        String before = b0.toString();
+        b0.makeMove(Move.parseMove("b2-b4-d2-d4"));
+        assertEquals(1 << Move.index('d', '4'),
+                     b0.pieces(PieceColor.WHITE));
+        assertEquals(0, b0.pieces(PieceColor.BLACK));
+        b0.unmakeMove();
+        assertEquals(before, b0.toString());
+        assertEquals(PieceColor.WHITE, b0.whoseMove());
+    }
+
+    @Test
+    public void testHashKey() {
+        Board b0 = new Board();
+        long start = b0.hashKey();
+        makeMoves(b0, GAME1);
+        Board b1 = new Board();
+        b1.setPieces("wwbww w--ww --www b--bb bb-bb", PieceColor.BLACK);
+        assertEquals(b1, b0);
+        assertEquals(b1.hashKey(), b0.hashKey());
+        assertEquals(b1.hashCode(), b0.hashCode());
+        assertEquals(b0.hashKey(), new Board(b0).hashKey());
+        b1.setPieces("wwbww w--ww --www b--bb bb-bb", PieceColor.WHITE);
+        assertNotEquals(b1.hashKey(), b0.hashKey());
+        for (int i = 0; i < GAME1.length; i += 1) {
+            b0.unmakeMove();
+        }
+        assertEquals(start, b0.hashKey());
+        assertEquals(start, new Board().hashKey());
+    }
+
+    @Test
+    public void testLegalMoves() {
+        Board b0 = new Board();
+        assertEquals(4, b0.legalMoves().size());
+        assertTrue(b0.legalMove(Move.parseMove("d3-c3")));
+        assertFalse(b0.legalMove(Move.parseMove("c2-c4")));
+        b0.makeMove(Move.parseMove("d3-c3"));
+        assertTrue(b0.legalMove(Move.parseMove("b3-d3")));
+        assertFalse(b0.legalMove(Move.parseMove("d3-c3")));
+        assertEquals(1, b0.legalMoves().size());
+        b0.unmakeMove();
+        assertTrue(b0.legalMove(Move.parseMove("d3-c3")));
+    }
+
+    @Test
+    public void testListeners() {
+        Board b0 = new Board();
+        Board view = b0.constantView();
+        int[] count = new int[1];
+        b0.addListener(b -> count[0] += 1);
+        makeMoves(b0, GAME1);
+        assertEquals(GAME1.length, count[0]);
+        assertEquals(b0, view);
+        assertEquals(GAME1_BOARD, view.toString());
+        Board copy = new Board(b0);
+        copy.undo();
+        assertEquals(GAME1.length, count[0]);
+    }
+
+    @Test
+    public void testCaptures() {
+        Board b0 = new Board();
+        MoveList captures = new MoveList();
+        b0.getCaptures(captures);
+        assertTrue(captures.isEmpty());
+        b0.makeMove(Move.parseMove("c2-c3"));
+        b0.getCaptures(captures);
+        assertEquals(b0.legalMoves().size(), captures.size());
+        for (int i = 0; i < captures.size(); i += 1) {
+            assertTrue(MoveCode.isJump(captures.get(i)));
+            assertTrue(b0.legalMove(captures.get(i)));
+        }
+    }
+
+    @Test
+    public void testNullMove() {
+        Board b0 = new Board();
+        makeMoves(b0, GAME1);
+        Board b1 = new Board(b0);
+        long key = b0.hashKey();
+        b0.makeNullMove();
+        assertEquals(b1.whoseMove().opposite(), b0.whoseMove());
+        assertEquals(b1.toString(), b0.toString());
+        assertNotEquals(key, b0.hashKey());
+        b0.unmakeMove();
+        assertEquals(b1, b0);
+        assertEquals(key, b0.hashKey());
+        assertEquals(b1.legalMoves().size(), b0.legalMoves().size());
+    }
+
+    /** Values of pieces by square, as seen by their owners, for
+     *  testCounts: the number of the square. */
+    private static final int[] SQUARE_VALUES = new int[Move.SIDE * Move.SIDE];
+
+    static {
+        for (int k = 0; k < SQUARE_VALUES.length; k += 1) {
+            SQUARE_VALUES[k] = k;
+        }
+    }
+
+    /** Assert that the piece counts and square sums kept by B match its
+     *  contents. */
+    private static void checkCounts(Board b) {
+        for (PieceColor color : new PieceColor[] { PieceColor.WHITE,
+                                                   PieceColor.BLACK }) {
+            int pieces = b.pieces(color);
+            assertEquals(Integer.bitCount(pieces), b.pieceCount(color));
+            int sum = 0;
+            for (int k = 0; k < SQUARE_VALUES.length; k += 1) {
+                if ((pieces & (1 << k)) != 0) {
+                    sum += SQUARE_VALUES[Board.ownSquare(k, color)];
+                }
+            }
+            assertEquals(sum, b.squareSum(color));
+        }
+    }
+
+    @Test
+    public void testCounts() {
+        Board b0 = new Board();
+        b0.setSquareValues(SQUARE_VALUES);
+        checkCounts(b0);
+        assertEquals(2 * Move.SIDE + 2, b0.pieceCount(PieceColor.WHITE));
+        b0.setPieces("----- ----- ----- ----- ww-bb", PieceColor.WHITE);
+        assertEquals(20 + 21, b0.squareSum(PieceColor.WHITE));
+        assertEquals(0 + 1, b0.squareSum(PieceColor.BLACK));
+        b0.setSquareValues(null);
+        assertEquals(0, b0.squareSum(PieceColor.WHITE));
+        b0.setSquareValues(SQUARE_VALUES);
+        b0.clear();
+        for (String mov : GAME1) {
+            b0.makeMove(Move.parseMove(mov));
+            checkCounts(b0);
+            checkCounts(new Board(b0));
+        }
+        for (int i = 0; i < GAME1.length; i += 1) {
+            b0.unmakeMove();
+            checkCounts(b0);
+        }
+        b0.setPieces("----- ----- --w-- --b-- -----", PieceColor.WHITE);
+        checkCounts(b0);
+    }
+
+    @Test
+    public void testLastMoves() {
+        String position = "----- ----- --w-- ----- ----b";
+        Board b0 = new Board();
+        b0.setPieces(position, PieceColor.WHITE);
+        makeMoves(b0, new String[] { "c3-d3", "e5-d5" });
+        Move back = Move.parseMove("d3-c3");
+        assertFalse(b0.legalMove(back));
+        assertEquals(2, b0.legalMoves().size());
+        Board b1 = new Board(b0);
+        assertFalse(b1.legalMove(back));
+        b1.makeMove(Move.parseMove("d3-e3"));
+        assertFalse(b0.legalMove(back));
+        Board b2 = new Board();
+        b2.setPieces("----- ----- ---w- ----- ---b-", PieceColor.WHITE);
+        assertTrue(b2.legalMove(back));
+        b0.unmakeMove();
+        b0.unmakeMove();
+        assertEquals(MoveCode.NONE, b0.lastMove(PieceColor.WHITE));
+        assertEquals(0, b0.repetitions());
+    }
+
+    /** Sideways moves that return the position of testRepetitions to
+     *  itself. */
+    private static final String[] CYCLE =
+    { "a1-b1", "a5-b5", "e1-d1", "e5-d5",
+      "b1-a1", "b5-a5", "d1-e1", "d5-e5",
+    };
+
+    @Test
+    public void testRepetitions() {
+        Board b0 = new Board();
+        b0.setPieces("w---w ----- ----- ----- b---b", PieceColor.WHITE);
+        for (int n = 1; n <= 2; n += 1) {
+            for (int i = 0; i < CYCLE.length; i += 1) {
+                assertTrue(b0.legalMove(Move.parseMove(CYCLE[i])));
+                b0.makeMove(Move.parseMove(CYCLE[i]));
+                int seen = i == CYCLE.length - 1 ? n : n - 1;
+                assertEquals(seen, b0.repetitions());
+            }
+        }
+        b0.makeMove(Move.parseMove("a1-a2"));
+        assertEquals(0, b0.repetitions());
+        makeMoves(b0, new String[] { "a5-b5", "e1-d1", "b5-c5" });
+        assertEquals(0, b0.repetitions());
+        for (int i = 0; i < 4; i += 1) {
+            b0.unmakeMove();
+        }
+        assertEquals(2, b0.repetitions());
+    }
+
     @Test
     public void testUndo() {
         Board b0 = new Board();
@@ -5,8 +5,6 @@ import ucb.gui2.Pad;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.BasicStroke;
-import java.util.Observer;
-import java.util.Observable;
 
 import java.awt.event.MouseEvent;
 
@@ -15,7 +13,7 @@ import static qirkat.PieceColor.*;
 /** Widget for displaying a Qirkat board.
  *  @author Lily Vittayarukskul
  */
-class BoardWidget extends Pad implements Observer {
+class BoardWidget extends Pad {
 
     /** Length of side of one square, in pixels. */
     static final int SQDIM = 50;
@@ -47,7 +45,7 @@ class BoardWidget extends Pad implements Observer {
     BoardWidget(Board model) {
         _model = model;
         setMouseHandler("click", this::readMove);
-        _model.addObserver(this);
+        _model.addListener(this::modelChanged);
         _dim = SQDIM * SIDE;
         setPreferredSize(_dim, _dim);
     }
@@ -80,8 +78,8 @@ class BoardWidget extends Pad implements Observer {
         }
     }
 
-    @Override
-    public synchronized void update(Observable model, Object arg) {
+    /** Respond to a change in MODEL. */
+    private synchronized void modelChanged(Board model) {
         repaint();
     }
 
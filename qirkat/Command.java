@@ -19,6 +19,16 @@ class Command {
         AUTO("(?i)auto\\s+(white|black)"),
         MANUAL("(?i)manual\\s+(white|black)"),
         SEED("seed\\s+(\\d+)"),
+        HASH("hash\\s+(\\d+)"),
+        TIME("time\\s+(\\d+)"),
+        NODES("nodes\\s+(\\d+)"),
+        THREADS("threads\\s+(\\d+)"),
+        PARALLEL("parallel\\s+(smp|split)"),
+        PONDER("ponder\\s+(on|off)"),
+        TABLEBASE("tablebase\\s+(\\S+)"),
+        BOOK("book\\s+(\\S+)"),
+        WEIGHTS("weights\\s+(\\S+)"),
+        ENGINE("engine\\s+(alphabeta|mcts)"),
         START,
         SETBOARD("(?i)set\\s+(white|black)\\s+((?:[bw-]\\s*){25})"),
         /* Regular moves (set-up or play) */
@@ -43,6 +43,35 @@ public class CommandTest {
         checkError("seed 142 foo");
     }
 
+    @Test public void testHASH() {
+        check("hash 64", HASH, "64");
+        checkError("hash");
+        checkError("hash big");
+    }
+
+    @Test public void testLIMITS() {
+        check("time 500", TIME, "500");
+        check("nodes 0", NODES, "0");
+        checkError("time");
+        checkError("nodes -1");
+        check("threads 8", THREADS, "8");
+        checkError("threads");
+        check("parallel split", PARALLEL, "split");
+        check("parallel smp", PARALLEL, "smp");
+        checkError("parallel both");
+        check("ponder on", PONDER, "on");
+        checkError("ponder");
+        check("tablebase qirkat4.tb", TABLEBASE, "qirkat4.tb");
+        checkError("tablebase");
+        check("book openings.bk", BOOK, "openings.bk");
+        checkError("book");
+        check("weights tuned.txt", WEIGHTS, "tuned.txt");
+        checkError("weights");
+        check("engine mcts", ENGINE, "mcts");
+        check("engine alphabeta", ENGINE, "alphabeta");
+        checkError("engine random");
+    }
+
     @Test public void testSTART() {
         check("start", START);
         checkError("start foo");
@@ -0,0 +1,225 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Scanner;
+
+import static qirkat.PieceColor.*;
+import static qirkat.ValidMoves.*;
+import static qirkat.Move.SIDE;
+
+/** A table-driven static evaluation.  The value of a position to the
+ *  player to move is the sum, over a fixed set of features, of the
+ *  difference between the feature's counts for that player and for its
+ *  opponent, times the feature's weight.  The features are:
+ *  <ul>
+ *  <li> one for each square, counting the player's pieces there, with
+ *  squares numbered relative to the player, so that its home row is row
+ *  0 (piece-square values);
+ *  <li> VULNERABLE, counting the player's pieces that the opponent could
+ *  capture if it were to move; and
+ *  <li> LINES, counting the lines of three adjacent squares held by the
+ *  player, which cannot be broken by a single capture.
+ *  </ul>
+ *  Weights are read from a file (see EvaluatorTuner), in which they
+ *  appear as integers in the order above, separated by whitespace; a '#'
+ *  starts a comment that runs to the end of its line.  The default
+ *  weights count PIECE_VALUE per piece plus MOBILE_VALUE per piece not
+ *  on its last row.
+ *  @author Lily Vittayarukskul
+ */
+class Evaluator {
+
+    /** Default value of a piece. */
+    static final int PIECE_VALUE = 4;
+    /** Default additional value of a piece that is not on its last row
+     *  (and so may still move without capturing). */
+    static final int MOBILE_VALUE = 1;
+
+    /** Indices of the pattern features, which follow the piece-square
+     *  features. */
+    static final int VULNERABLE = NUM_INDICES, LINES = NUM_INDICES + 1;
+
+    /** Number of features. */
+    static final int NUM_FEATURES = LINES + 1;
+
+    /** The masks of all lines of three adjacent squares. */
+    private static final int[] LINE_MASKS;
+
+    static {
+        int n = 0;
+        int[] lines = new int[NUM_INDICES * NUM_DIRECTIONS];
+        for (int k = 0; k < NUM_INDICES; k += 1) {
+            for (int d = 0; d < NUM_DIRECTIONS; d += 2) {
+                int k1 = NEIGHBORS[k * NUM_DIRECTIONS + d];
+                int k2 = LANDINGS[k * NUM_DIRECTIONS + d];
+                if (k1 != -1 && k2 != -1) {
+                    lines[n] = (1 << k) | (1 << k1) | (1 << k2);
+                    n += 1;
+                }
+            }
+        }
+        LINE_MASKS = Arrays.copyOf(lines, n);
+    }
+
+    /** An evaluator with the default weights. */
+    Evaluator() {
+        _weights = new int[NUM_FEATURES];
+        for (int k = 0; k < NUM_INDICES; k += 1) {
+            _weights[k] = PIECE_VALUE + (k / SIDE < SIDE - 1 ? MOBILE_VALUE
+                                         : 0);
+        }
+        _squareValues = Arrays.copyOf(_weights, NUM_INDICES);
+    }
+
+    /** An evaluator with weights WEIGHTS (indexed by feature). */
+    Evaluator(int[] weights) {
+        if (weights.length != NUM_FEATURES) {
+            throw new IllegalArgumentException("wrong number of weights");
+        }
+        _weights = weights.clone();
+        _squareValues = Arrays.copyOf(_weights, NUM_INDICES);
+    }
+
+    /** An evaluator with the weights in FILE. */
+    Evaluator(File file) throws IOException {
+        _weights = new int[NUM_FEATURES];
+        String text = new String(Files.readAllBytes(file.toPath()));
+        Scanner input = new Scanner(text.replaceAll("#.*", ""));
+        for (int i = 0; i < NUM_FEATURES; i += 1) {
+            if (!input.hasNextInt()) {
+                throw new IOException("missing or bad weight");
+            }
+            _weights[i] = input.nextInt();
+        }
+        if (input.hasNext()) {
+            throw new IOException("too many weights");
+        }
+        _squareValues = Arrays.copyOf(_weights, NUM_INDICES);
+    }
+
+    /** Return the weight of feature F. */
+    int weight(int f) {
+        return _weights[f];
+    }
+
+    /** Write my weights to OUT in the form read by Evaluator(File). */
+    void write(PrintWriter out) {
+        out.println("# Piece-square values, home row first.");
+        for (int r = 0; r < SIDE; r += 1) {
+            for (int c = 0; c < SIDE; c += 1) {
+                out.printf("%5d", _weights[r * SIDE + c]);
+            }
+            out.println();
+        }
+        out.printf("# Vulnerable pieces.%n%d%n", _weights[VULNERABLE]);
+        out.printf("# Lines of three.%n%d%n", _weights[LINES]);
+    }
+
+    /** Return my piece-square values, indexed by square as seen by the
+     *  owner of a piece (see Board.ownSquare), for Board.setSquareValues.
+     *  The result must not be modified. */
+    int[] squareValues() {
+        return _squareValues;
+    }
+
+    /** Return the value of the position on BOARD to the player to
+     *  move.  If BOARD keeps its square sums with my squareValues(), the
+     *  piece-square part costs only a lookup; the pattern parts are
+     *  computed only if their weights are not zero. */
+    int evaluate(Board board) {
+        PieceColor player = board.whoseMove(), opponent = player.opposite();
+        int mine = board.pieces(player), theirs = board.pieces(opponent);
+        int value;
+        if (board.squareValues() == _squareValues) {
+            value = board.squareSum(player) - board.squareSum(opponent);
+        } else {
+            value = squareSum(mine, player) - squareSum(theirs, opponent);
+        }
+        if (_weights[VULNERABLE] != 0) {
+            int empty = board.pieces(EMPTY);
+            value += _weights[VULNERABLE]
+                * (vulnerable(mine, theirs, empty)
+                   - vulnerable(theirs, mine, empty));
+        }
+        if (_weights[LINES] != 0) {
+            value += _weights[LINES] * (lines(mine) - lines(theirs));
+        }
+        return value;
+    }
+
+    /** Add to FEATURES the feature counts (those of the player to move
+     *  minus those of its opponent) of the position on BOARD. */
+    static void features(Board board, int[] features) {
+        PieceColor player = board.whoseMove();
+        int mine = board.pieces(player),
+            theirs = board.pieces(player.opposite()),
+            empty = board.pieces(EMPTY);
+        count(mine, theirs, empty, player, features, 1);
+        count(theirs, mine, empty, player.opposite(), features, -1);
+    }
+
+    /** Return the sum of the piece-square values of player COLOR's
+     *  pieces, which are on the squares in MINE. */
+    private int squareSum(int mine, PieceColor color) {
+        int sum = 0;
+        for (int rest = mine; rest != 0; rest &= rest - 1) {
+            sum += _squareValues[Board.ownSquare(
+                       Integer.numberOfTrailingZeros(rest), color)];
+        }
+        return sum;
+    }
+
+    /** Add SIGN times the feature counts of player COLOR, whose pieces are
+     *  on the squares in MINE, to FEATURES, where its opponent's pieces
+     *  are on THEIRS and EMPTY is empty. */
+    private static void count(int mine, int theirs, int empty,
+                              PieceColor color, int[] features, int sign) {
+        for (int rest = mine; rest != 0; rest &= rest - 1) {
+            features[Board.ownSquare(Integer.numberOfTrailingZeros(rest),
+                                     color)] += sign;
+        }
+        features[VULNERABLE] += sign * vulnerable(mine, theirs, empty);
+        features[LINES] += sign * lines(mine);
+    }
+
+    /** Return the number of pieces in MINE that a piece in THEIRS could
+     *  capture, given that EMPTY is empty. */
+    private static int vulnerable(int mine, int theirs, int empty) {
+        int result = 0;
+        for (int rest = theirs; rest != 0; rest &= rest - 1) {
+            int k = Integer.numberOfTrailingZeros(rest);
+            if ((JUMP_OVER_MASKS[k] & mine) == 0
+                || (JUMP_TO_MASKS[k] & empty) == 0) {
+                continue;
+            }
+            int[] over = JUMP_OVER[k], to = JUMP_TO[k];
+            for (int i = 0; i < over.length; i += 1) {
+                if ((mine & (1 << over[i])) != 0
+                    && (empty & (1 << to[i])) != 0) {
+                    result |= 1 << over[i];
+                }
+            }
+        }
+        return Integer.bitCount(result);
+    }
+
+    /** Return the number of lines of three adjacent squares in MINE. */
+    private static int lines(int mine) {
+        int result = 0;
+        for (int line : LINE_MASKS) {
+            if ((mine & line) == line) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** My weights, indexed by feature. */
+    private final int[] _weights;
+    /** The piece-square part of _weights. */
+    private final int[] _squareValues;
+}
@@ -0,0 +1,128 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.Evaluator.*;
+
+/** Tests of the Evaluator and EvaluatorTuner classes.
+ *  @author Lily Vittayarukskul
+ */
+public class EvaluatorTest {
+
+    /** Return the moves of a game played at random from the initial
+     *  position by RANDOM, which are at most 200. */
+    private static MoveList randomGame(Random random) {
+        MoveList game = new MoveList();
+        Board b = new Board();
+        for (int i = 0; i < 200; i += 1) {
+            MoveList moves = b.legalMoves();
+            if (moves.isEmpty()) {
+                break;
+            }
+            long move = moves.get(random.nextInt(moves.size()));
+            game.add(move);
+            b.makeMove(move);
+        }
+        return game;
+    }
+
+    /** Return the number of COLOR's pieces on B that are not on their
+     *  last row. */
+    private static int mobile(Board b, PieceColor color) {
+        int lastRow = (1 << Move.SIDE) - 1;
+        if (color == PieceColor.WHITE) {
+            lastRow <<= Move.SIDE * (Move.SIDE - 1);
+        }
+        return Integer.bitCount(b.pieces(color) & ~lastRow);
+    }
+
+    @Test
+    public void testDefault() {
+        Random random = new Random(7);
+        Evaluator evaluator = new Evaluator();
+        for (int g = 0; g < 20; g += 1) {
+            MoveList game = randomGame(random);
+            Board b = new Board();
+            for (int i = 0; i < game.size(); i += 1) {
+                PieceColor me = b.whoseMove(), you = me.opposite();
+                int value = PIECE_VALUE
+                    * (b.pieceCount(me) - b.pieceCount(you))
+                    + MOBILE_VALUE * (mobile(b, me) - mobile(b, you));
+                assertEquals(value, evaluator.evaluate(b));
+                Board b1 = new Board(b);
+                b1.setSquareValues(evaluator.squareValues());
+                assertEquals(value, evaluator.evaluate(b1));
+                b.makeMove(game.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testFeatures() {
+        Random random = new Random(11);
+        int[] weights = new int[NUM_FEATURES];
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            weights[f] = random.nextInt(21) - 10;
+        }
+        Evaluator evaluator = new Evaluator(weights);
+        Board b = new Board();
+        b.setPieces("w-w-- -bb-- --w-- bbb-- -w---", PieceColor.WHITE);
+        int[] features = new int[NUM_FEATURES];
+        Evaluator.features(b, features);
+        assertEquals(-2, features[VULNERABLE]);
+        assertEquals(-1, features[LINES]);
+        for (int g = 0; g < 20; g += 1) {
+            MoveList game = randomGame(random);
+            b = new Board();
+            for (int i = 0; i < game.size(); i += 1) {
+                features = new int[NUM_FEATURES];
+                Evaluator.features(b, features);
+                int sum = 0;
+                for (int f = 0; f < NUM_FEATURES; f += 1) {
+                    sum += weights[f] * features[f];
+                }
+                assertEquals(sum, evaluator.evaluate(b));
+                Board b1 = new Board(b);
+                b1.setSquareValues(evaluator.squareValues());
+                assertEquals(sum, evaluator.evaluate(b1));
+                b.makeMove(game.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        int[] weights = new int[NUM_FEATURES];
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            weights[f] = 3 * f - 20;
+        }
+        File file = File.createTempFile("qirkat", ".weights");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            new Evaluator(weights).write(out);
+        }
+        Evaluator evaluator = new Evaluator(file);
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            assertEquals(weights[f], evaluator.weight(f));
+        }
+    }
+
+    @Test
+    public void testTuner() {
+        Random random = new Random(13);
+        EvaluatorTuner tuner = new EvaluatorTuner(2);
+        for (int g = 0; g < 50; g += 1) {
+            tuner.addGame(randomGame(random));
+        }
+        assertTrue(tuner.size() > 0);
+        Evaluator start = new Evaluator();
+        Evaluator tuned = tuner.tune(start);
+        assertTrue(tuner.error(tuned) <= tuner.error(start));
+    }
+}
@@ -0,0 +1,293 @@
+package qirkat;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static qirkat.Evaluator.NUM_FEATURES;
+
+/** Fits the weights of an Evaluator to the results of recorded games, in
+ *  the manner of "Texel tuning": it chooses the weights that minimize the
+ *  mean squared difference between the result of each game (1 for a win
+ *  by the player to move, 0 for a loss) and sigmoid(K * value), for each
+ *  quiet position of the game, where value is the position's value under
+ *  the weights, and K is a scale fitted once to the starting weights.
+ *  This is logistic regression on the features of Evaluator, fitted by
+ *  gradient descent (with Adam's step sizes); each step's gradient is
+ *  summed over the positions in parallel, by the threads of a
+ *  ForkJoinPool.
+ *
+ *  Games are read from transcripts: text files in which each line that
+ *  contains a move (in the notation of Move.parseMove) contributes its
+ *  first move to the current game, as in the input to Main or the output
+ *  of an AI ("White moves c2-c3.").  A line containing "start" or "clear"
+ *  begins a new game.  Only games that end (with the player to move
+ *  unable to move) are used.
+ *
+ *  Usage: java qirkat.EvaluatorTuner OUT FILE... fits weights to the
+ *  games in the FILEs, starting from the default weights, and writes them
+ *  to OUT.
+ *  @author Lily Vittayarukskul
+ */
+class EvaluatorTuner {
+
+    /** Number of plies at the start of each game whose positions are not
+     *  used, since they are common to many games. */
+    static final int SKIP_PLIES = 4;
+
+    /** Number of gradient-descent steps. */
+    static final int STEPS = 1000;
+
+    /** Size of a step. */
+    static final double LEARNING_RATE = 0.05;
+
+    /** Decay rates of Adam's running averages of the gradient and of its
+     *  square, and the constant that keeps its steps finite. */
+    static final double BETA1 = 0.9, BETA2 = 0.999, EPSILON = 1e-8;
+
+    /** Least and greatest scales K tried, and the factor between
+     *  consecutive ones. */
+    static final double MIN_SCALE = 1e-3, MAX_SCALE = 10, SCALE_STEP = 1.05;
+
+    /** Number of positions handled serially by one task. */
+    static final int CHUNK = 4096;
+
+    /** Initial capacity for positions. */
+    private static final int INITIAL_POSITIONS = 1024;
+
+    /** A tuner that uses THREADS threads. */
+    EvaluatorTuner(int threads) {
+        _pool = new ForkJoinPool(threads);
+    }
+
+    /** Add the games in the transcript NAME. */
+    void read(String name) throws IOException {
+        try (BufferedReader input =
+             new BufferedReader(new FileReader(name))) {
+            MoveList game = new MoveList();
+            for (String line = input.readLine(); line != null;
+                 line = input.readLine()) {
+                if (NEW_GAME.matcher(line).find()) {
+                    addGame(game);
+                    game.clear();
+                }
+                Matcher mat = MOVE.matcher(line);
+                if (mat.find()) {
+                    game.add(MoveCode.parse(mat.group()));
+                }
+            }
+            addGame(game);
+        }
+    }
+
+    /** Add the positions of the game consisting of MOVES, starting from
+     *  the initial position, if it is legal and complete. */
+    void addGame(MoveList moves) {
+        Board board = new Board();
+        int start = _size;
+        MoveList captures = new MoveList();
+        for (int i = 0; i < moves.size(); i += 1) {
+            if (!board.legalMove(moves.get(i))) {
+                _size = start;
+                return;
+            }
+            captures.clear();
+            board.getCaptures(captures);
+            if (i >= SKIP_PLIES && captures.isEmpty()) {
+                addPosition(board);
+            }
+            board.makeMove(moves.get(i));
+        }
+        if (!board.legalMoves().isEmpty()) {
+            _size = start;
+            return;
+        }
+        PieceColor loser = board.whoseMove();
+        for (int p = start; p < _size; p += 1) {
+            _results[p] = (byte) (_results[p] == colorCode(loser) ? 0 : 1);
+        }
+    }
+
+    /** Return the number of positions added. */
+    int size() {
+        return _size;
+    }
+
+    /** Return weights fitted to my positions, starting from those of
+     *  START. */
+    Evaluator tune(Evaluator start) {
+        double[] weights = new double[NUM_FEATURES];
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            weights[f] = start.weight(f);
+        }
+        _scale = MIN_SCALE;
+        double best = Double.MAX_VALUE;
+        for (double k = MIN_SCALE; k <= MAX_SCALE; k *= SCALE_STEP) {
+            _scale = k;
+            double error = _pool.invoke(new Gradient(weights, 0, _size))
+                [NUM_FEATURES];
+            if (error < best) {
+                best = error;
+            } else {
+                _scale = k / SCALE_STEP;
+                break;
+            }
+        }
+        double[] mean = new double[NUM_FEATURES],
+            meanSquare = new double[NUM_FEATURES];
+        for (int step = 1; step <= STEPS; step += 1) {
+            double[] gradient =
+                _pool.invoke(new Gradient(weights, 0, _size));
+            for (int f = 0; f < NUM_FEATURES; f += 1) {
+                double g = gradient[f] / _size;
+                mean[f] = BETA1 * mean[f] + (1 - BETA1) * g;
+                meanSquare[f] = BETA2 * meanSquare[f] + (1 - BETA2) * g * g;
+                double m = mean[f] / (1 - Math.pow(BETA1, step)),
+                    v = meanSquare[f] / (1 - Math.pow(BETA2, step));
+                weights[f] -= LEARNING_RATE * m / (Math.sqrt(v) + EPSILON);
+            }
+        }
+        int[] result = new int[NUM_FEATURES];
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            result[f] = (int) Math.round(weights[f]);
+        }
+        return new Evaluator(result);
+    }
+
+    /** Return the mean squared error of EVALUATOR's predictions of the
+     *  results of my positions, using the scale fitted by the last call
+     *  to tune. */
+    double error(Evaluator evaluator) {
+        double[] weights = new double[NUM_FEATURES];
+        for (int f = 0; f < NUM_FEATURES; f += 1) {
+            weights[f] = evaluator.weight(f);
+        }
+        return _pool.invoke(new Gradient(weights, 0, _size))[NUM_FEATURES]
+            / _size;
+    }
+
+    /** Record the features of the position on BOARD, marking it with the
+     *  player to move until the result is known. */
+    private void addPosition(Board board) {
+        if (_size == _results.length) {
+            _results = Arrays.copyOf(_results, 2 * _size);
+            _features = Arrays.copyOf(_features, 2 * _size * NUM_FEATURES);
+        }
+        int[] features = new int[NUM_FEATURES];
+        Evaluator.features(board, features);
+        System.arraycopy(features, 0, _features, _size * NUM_FEATURES,
+                         NUM_FEATURES);
+        _results[_size] = colorCode(board.whoseMove());
+        _size += 1;
+    }
+
+    /** Return a code for COLOR, used to mark positions whose result is
+     *  not yet known. */
+    private static byte colorCode(PieceColor color) {
+        return (byte) (color == PieceColor.WHITE ? 0 : 1);
+    }
+
+    /** The gradient of the total squared error over a range of positions
+     *  with respect to the weights, followed by the total squared error
+     *  itself. */
+    private class Gradient extends RecursiveTask<double[]> {
+
+        /** The gradient at WEIGHTS over positions LO .. HI-1. */
+        Gradient(double[] weights, int lo, int hi) {
+            _weights = weights;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (_hi - _lo > CHUNK) {
+                int mid = (_lo + _hi) >>> 1;
+                Gradient left = new Gradient(_weights, _lo, mid);
+                left.fork();
+                double[] result =
+                    new Gradient(_weights, mid, _hi).compute();
+                double[] other = left.join();
+                for (int f = 0; f <= NUM_FEATURES; f += 1) {
+                    result[f] += other[f];
+                }
+                return result;
+            }
+            double[] result = new double[NUM_FEATURES + 1];
+            for (int p = _lo; p < _hi; p += 1) {
+                int base = p * NUM_FEATURES;
+                double value = 0;
+                for (int f = 0; f < NUM_FEATURES; f += 1) {
+                    value += _weights[f] * _features[base + f];
+                }
+                double predicted = 1 / (1 + Math.exp(-_scale * value));
+                double diff = predicted - _results[p];
+                double slope =
+                    2 * diff * predicted * (1 - predicted) * _scale;
+                for (int f = 0; f < NUM_FEATURES; f += 1) {
+                    result[f] += slope * _features[base + f];
+                }
+                result[NUM_FEATURES] += diff * diff;
+            }
+            return result;
+        }
+
+        /** The weights at which the gradient is taken. */
+        private final double[] _weights;
+        /** The range of positions covered. */
+        private final int _lo, _hi;
+    }
+
+    /** Fit weights as described in the class comment, using the arguments
+     *  ARGS. */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: java qirkat.EvaluatorTuner OUT"
+                               + " FILE...");
+            System.exit(1);
+        }
+        EvaluatorTuner tuner =
+            new EvaluatorTuner(Runtime.getRuntime().availableProcessors());
+        for (int i = 1; i < args.length; i += 1) {
+            tuner.read(args[i]);
+        }
+        if (tuner.size() == 0) {
+            System.err.println("No complete games found.");
+            System.exit(1);
+        }
+        Evaluator start = new Evaluator();
+        Evaluator tuned = tuner.tune(start);
+        System.out.printf("%d positions; error %.5f, tuned %.5f.%n",
+                          tuner.size(), tuner.error(start),
+                          tuner.error(tuned));
+        try (PrintWriter out = new PrintWriter(args[0])) {
+            tuned.write(out);
+        }
+    }
+
+    /** Pattern for a move. */
+    private static final Pattern MOVE =
+        Pattern.compile("[a-e][1-5](?:-[a-e][1-5])+");
+    /** Pattern for a line that begins a new game. */
+    private static final Pattern NEW_GAME =
+        Pattern.compile("\\b(start|clear)\\b");
+
+    /** The threads that compute gradients. */
+    private final ForkJoinPool _pool;
+    /** Scale applied to values before the sigmoid. */
+    private double _scale;
+    /** Number of positions. */
+    private int _size;
+    /** Result of each position's game for the player to move there (1 for
+     *  a win), or, for positions of the current game, a code for that
+     *  player. */
+    private byte[] _results = new byte[INITIAL_POSITIONS];
+    /** The features of each position, NUM_FEATURES per position. */
+    private int[] _features = new int[INITIAL_POSITIONS * NUM_FEATURES];
+}
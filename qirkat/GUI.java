@@ -62,7 +62,7 @@ class GUI extends TopLevel implements Observer, Reporter {
                            "ibottom", 5));
         setMinimumSize(MIN_SIZE, MIN_SIZE);
         _widget.addObserver(this);
-        _model.addObserver(this);
+        _model.addListener(this::modelChanged);
     }
 
     /** Execute the "Quit" button function. */
@@ -120,13 +120,16 @@ class GUI extends TopLevel implements Observer, Reporter {
 
     @Override
     public void update(Observable obs, Object arg) {
-        if (obs == _model) {
-            int i = 0;
-        } else if (obs == _widget) {
+        if (obs == _widget) {
             int i = 0;
         }
     }
 
+    /** Respond to a change in the model, BOARD. */
+    private void modelChanged(Board board) {
+        int i = 0;
+    }
+
     /** Respond to a click on SQ. */
     private void movePiece(String sq) {
         int i = 0;
@@ -1,5 +1,6 @@
 package qirkat;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
@@ -47,19 +48,19 @@ class Game {
             }
             if (_whiteIsManual && !_blackIsManual) {
                 white = new Manual(this, WHITE);
-                black = new AI(this, BLACK);
+                black = newAI(BLACK);
             }
             if (_whiteIsManual && _blackIsManual) {
                 white = new Manual(this, WHITE);
                 black = new Manual(this, BLACK);
             }
             if (!_whiteIsManual && _blackIsManual) {
-                white = new AI(this, WHITE);
+                white = newAI(WHITE);
                 black = new Manual(this, BLACK);
             }
             if (!_whiteIsManual && !_blackIsManual) {
-                white = new AI(this, WHITE);
-                black = new AI(this, BLACK);
+                white = newAI(WHITE);
+                black = newAI(BLACK);
             }
 
             while (_state != SETUP && !_board.gameOver()) {
@@ -88,6 +89,8 @@ class Game {
                 }
             }
 
+            white.endGame();
+            black.endGame();
             if (_state == PLAYING) {
                 reportWinner();
             }
@@ -223,7 +226,7 @@ class Game {
     /** Perform the move OPERANDS[0]. */
     void doMove(String[] operands) {
         try {
-            Move mov = Move.parseMove(operands[0]);
+            long mov = MoveCode.parse(operands[0]);
             if (!_board.legalMove(mov)) {
                 throw new GameException("invalid move");
             }
@@ -270,6 +273,174 @@ class Game {
         }
     }
 
+    /** Execute 'hash OPERANDS[0]' command, where the operand is a string
+     *  of decimal digits giving the size in megabytes of each AI's
+     *  transposition table.  Takes effect at the next start. */
+    void doHash(String[] operands) {
+        try {
+            _hashMegabytes = Integer.parseInt(operands[0]);
+        } catch (NumberFormatException e) {
+            throw error("table size too large");
+        }
+    }
+
+    /** Return the size in megabytes of each AI's transposition table. */
+    int hashMegabytes() {
+        return _hashMegabytes;
+    }
+
+    /** Execute 'time OPERANDS[0]' command, where the operand is a string
+     *  of decimal digits giving the number of milliseconds an AI may
+     *  spend searching for each move.  Takes effect at the next start. */
+    void doTime(String[] operands) {
+        try {
+            _moveTime = Long.parseLong(operands[0]);
+        } catch (NumberFormatException e) {
+            throw error("time limit too large");
+        }
+    }
+
+    /** Return the time budget for each AI move, in milliseconds. */
+    long moveTime() {
+        return _moveTime;
+    }
+
+    /** Execute 'nodes OPERANDS[0]' command, where the operand is a string
+     *  of decimal digits giving the number of positions an AI may search
+     *  for each move, or 0 for no limit.  Takes effect at the next
+     *  start. */
+    void doNodes(String[] operands) {
+        try {
+            _nodeLimit = Long.parseLong(operands[0]);
+        } catch (NumberFormatException e) {
+            throw error("node limit too large");
+        }
+    }
+
+    /** Return the node budget for each AI move, or 0 if there is none. */
+    long nodeLimit() {
+        return _nodeLimit;
+    }
+
+    /** Execute 'threads OPERANDS[0]' command, where the operand is a
+     *  string of decimal digits giving the number of threads each AI uses
+     *  to search.  Takes effect at the next start. */
+    void doThreads(String[] operands) {
+        try {
+            _threads = Math.max(1, Integer.parseInt(operands[0]));
+        } catch (NumberFormatException e) {
+            throw error("too many threads");
+        }
+    }
+
+    /** Return the number of threads each AI uses to search. */
+    int threads() {
+        return _threads;
+    }
+
+    /** Execute 'parallel OPERANDS[0]' command, where the operand is "smp"
+     *  if each of an AI's threads is to run a whole search, sharing only a
+     *  transposition table, or "split" if the threads are to split a
+     *  single search tree among them.  Takes effect at the next start. */
+    void doParallel(String[] operands) {
+        _splitSearch = operands[0].equals("split");
+    }
+
+    /** Return true iff each AI's threads split a single search tree
+     *  among them, rather than each running a whole search. */
+    boolean splitSearch() {
+        return _splitSearch;
+    }
+
+    /** Execute 'engine OPERANDS[0]' command, where the operand is
+     *  "alphabeta" if each AI is to search with alpha-beta (see AI), or
+     *  "mcts" if it is to use Monte Carlo tree search (see MonteCarloAI).
+     *  Takes effect at the next start. */
+    void doEngine(String[] operands) {
+        _monteCarlo = operands[0].equals("mcts");
+    }
+
+    /** Return true iff AIs use Monte Carlo tree search. */
+    boolean monteCarlo() {
+        return _monteCarlo;
+    }
+
+    /** Return a new automated player of color COLOR, of the kind chosen
+     *  by the 'engine' command. */
+    private Player newAI(PieceColor color) {
+        return _monteCarlo ? new MonteCarloAI(this, color)
+            : new AI(this, color);
+    }
+
+    /** Execute 'ponder OPERANDS[0]' command, where the operand is "on"
+     *  if an AI playing a manual player is to search while it waits for
+     *  the opponent's move, and "off" otherwise.  Takes effect at the next
+     *  start. */
+    void doPonder(String[] operands) {
+        _ponder = operands[0].equals("on");
+    }
+
+    /** Return true iff an AI playing a manual player searches while it
+     *  waits for the opponent's move. */
+    boolean ponder() {
+        return _ponder;
+    }
+
+    /** Return true iff player COLOR is a manual player. */
+    boolean isManual(PieceColor color) {
+        return color == WHITE ? _whiteIsManual : _blackIsManual;
+    }
+
+    /** Execute 'tablebase OPERANDS[0]' command, where the operand names a
+     *  file written by TablebaseBuilder, which each AI is to consult from
+     *  the next start on. */
+    void doTablebase(String[] operands) {
+        try {
+            _tablebase = new Tablebase(new File(operands[0]));
+        } catch (IOException e) {
+            throw error("Cannot read tablebase %s", operands[0]);
+        }
+    }
+
+    /** Return the endgame tablebase that AIs consult, or null if there is
+     *  none. */
+    Tablebase tablebase() {
+        return _tablebase;
+    }
+
+    /** Execute 'book OPERANDS[0]' command, where the operand names a file
+     *  written by OpeningBookBuilder, which each AI is to consult from the
+     *  next start on. */
+    void doBook(String[] operands) {
+        try {
+            _openingBook = new OpeningBook(new File(operands[0]));
+        } catch (IOException e) {
+            throw error("Cannot read opening book %s", operands[0]);
+        }
+    }
+
+    /** Return the opening book that AIs consult, or null if there is
+     *  none. */
+    OpeningBook openingBook() {
+        return _openingBook;
+    }
+
+    /** Execute 'weights OPERANDS[0]' command, where the operand names a
+     *  file of evaluation weights (see Evaluator), which each AI is to use
+     *  from the next start on. */
+    void doWeights(String[] operands) {
+        try {
+            _evaluator = new Evaluator(new File(operands[0]));
+        } catch (IOException e) {
+            throw error("Cannot read weights %s", operands[0]);
+        }
+    }
+
+    /** Return the evaluation that AIs use. */
+    Evaluator evaluator() {
+        return _evaluator;
+    }
+
     /** Execute the artificial 'error' command. */
     void doError(String[] unused) {
         throw error("Command not understood");
@@ -294,6 +465,16 @@ class Game {
         _commands.put(MANUAL, this::doManual);
         _commands.put(PIECEMOVE, this::doMove);
         _commands.put(SEED, this::doSeed);
+        _commands.put(HASH, this::doHash);
+        _commands.put(TIME, this::doTime);
+        _commands.put(NODES, this::doNodes);
+        _commands.put(THREADS, this::doThreads);
+        _commands.put(PARALLEL, this::doParallel);
+        _commands.put(PONDER, this::doPonder);
+        _commands.put(ENGINE, this::doEngine);
+        _commands.put(TABLEBASE, this::doTablebase);
+        _commands.put(BOOK, this::doBook);
+        _commands.put(WEIGHTS, this::doWeights);
         _commands.put(SETBOARD, this::doSet);
         _commands.put(START, this::doStart);
         _commands.put(LOAD, this::doLoad);
@@ -315,4 +496,25 @@ class Game {
     private Reporter _reporter;
     /** Source of pseudo-random numbers (used by AIs). */
     private Random _randoms = new Random();
+    /** Size of each AI's transposition table, in megabytes. */
+    private int _hashMegabytes = TranspositionTable.DEFAULT_MEGABYTES;
+    /** Time budget for each AI move, in milliseconds. */
+    private long _moveTime = AI.DEFAULT_MOVE_TIME;
+    /** Node budget for each AI move, or 0 if there is none. */
+    private long _nodeLimit;
+    /** Number of threads each AI uses to search. */
+    private int _threads = Main.threads();
+    /** True iff each AI's threads split a single search tree. */
+    private boolean _splitSearch;
+    /** True iff an AI playing a manual player searches on its opponent's
+     *  time. */
+    private boolean _ponder;
+    /** True iff AIs use Monte Carlo tree search rather than alpha-beta. */
+    private boolean _monteCarlo;
+    /** The endgame tablebase that AIs consult, or null. */
+    private Tablebase _tablebase;
+    /** The opening book that AIs consult, or null. */
+    private OpeningBook _openingBook;
+    /** The evaluation that AIs use. */
+    private Evaluator _evaluator = new Evaluator();
 }
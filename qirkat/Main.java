@@ -10,7 +10,8 @@ import java.io.PipedWriter;
 public class Main {
 
     /** Run Qirkat game.  Use display if ARGS[k] is '--display', timing
-     *  if ARGS[k] is "--timing". */
+     *  if ARGS[k] is "--timing", and N search threads for each AI if
+     *  ARGS[k] is "--threads=N". */
     public static void main(String[] args) {
         boolean useGUI;
         System.out.println("CS61B Qirkat! Version 2.0");
@@ -25,7 +26,12 @@ public class Main {
                 _timing = true;
                 break;
             default:
-                usage();
+                if (args[i].matches("--threads=\\d{1,4}")) {
+                    _threads = Integer.parseInt(args[i].substring(
+                                                    THREADS_FLAG_LEN));
+                } else {
+                    usage();
+                }
                 break;
             }
         }
@@ -63,10 +69,16 @@ public class Main {
     /** Give usage message and exit. */
     static void usage() {
         System.err.println("Usage: java qirkat.Main [--display] [--timing]"
-                           + " [--strict]");
+                           + " [--threads=N] [--strict]");
         System.exit(1);
     }
 
+    /** Return the number of search threads each AI should use, as given
+     *  on the command line (default 1). */
+    static int threads() {
+        return _threads;
+    }
+
     /* TIMING */
 
     /** Start timing an operation. */
@@ -114,6 +126,12 @@ public class Main {
     /** Maximum operation time. */
     private static long _maxTime;
 
+    /** Number of search threads for each AI. */
+    private static int _threads = 1;
+
+    /** Length of the "--threads=" prefix. */
+    private static final int THREADS_FLAG_LEN = "--threads=".length();
+
     /** Size of the buffer for reading commands from a GUI (bytes). */
     private static final int BUFFER_LEN = 128;
 
@@ -0,0 +1,41 @@
+package qirkat;
+
+/** A Player that computes its own moves by Monte Carlo tree search (see
+ *  MonteCarloSearch), as an alternative to AI (see Game.monteCarlo).  It
+ *  searches each move for the same time budget as an AI, or, if there is
+ *  a node budget, for that many playouts, using the same number of
+ *  threads.  Its tree is kept from each of its moves to the next, so the
+ *  playouts made below its opponent's reply are not lost.
+ *  @author Lily Vittayarukskul
+ */
+class MonteCarloAI extends Player {
+
+    /** A new MonteCarloAI for GAME that will play MYCOLOR. */
+    MonteCarloAI(Game game, PieceColor myColor) {
+        super(game, myColor);
+        _moveTime = game.moveTime();
+        _playoutLimit = game.nodeLimit();
+        _search = new MonteCarloSearch(game.threads(),
+                                       game.nextRandom(Integer.MAX_VALUE));
+    }
+
+    @Override
+    Move myMove() {
+        Main.startTiming();
+        MoveList legal = board().legalMoves();
+        long found = legal.size() == 1 ? legal.get(0)
+            : _search.search(board(), _moveTime, _playoutLimit);
+        Move move = MoveCode.toMove(found);
+        System.out.println(myColor() + " moves "
+                + move.toString() + ".");
+        Main.endTiming();
+        return move;
+    }
+
+    /** Time budget for each move, in milliseconds. */
+    private final long _moveTime;
+    /** Playout budget for each move, or 0 if unlimited. */
+    private final long _playoutLimit;
+    /** My search, which keeps its tree between moves. */
+    private final MonteCarloSearch _search;
+}
@@ -0,0 +1,351 @@
+package qirkat;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static qirkat.MoveCode.NONE;
+
+/** A Monte Carlo tree search, using UCT.  Each iteration descends the
+ *  tree from the root, at each node choosing the child that maximizes
+ *  its mean score plus EXPLORATION * sqrt(ln(N) / n), where N and n are
+ *  the numbers of visits to the node and the child, until it reaches a
+ *  leaf.  A leaf visited before is expanded, and the descent continues to
+ *  one of its children.  The game is then played out from there with
+ *  random moves (lightly guided: a capture always takes as many pieces as
+ *  it can), and its result is added to the scores of the nodes on the
+ *  path: a win counts 2 for the player who made the move leading to a
+ *  node, a draw 1, and a loss 0.  A playout that lasts MAX_PLAYOUT_PLIES
+ *  plies is a draw.  Playouts use a scratch Board belonging to their
+ *  thread, reset by Board.copy, and so create no objects.
+ *
+ *  Several threads may share one tree ("tree parallelism").  Each
+ *  counts VIRTUAL_LOSS visits to each node it passes on the way down, as
+ *  though they had been lost, and takes back all but one of them when
+ *  it adds its result, so that threads descending at the same time
+ *  spread over different lines.  Counts are updated atomically, without
+ *  locks; only expansion locks its node.
+ *
+ *  The tree is kept from one search to the next.  If the position
+ *  searched is at most REUSE_PLIES plies below the last one searched, the
+ *  corresponding subtree becomes the new root, with all its statistics.
+ *  @author Lily Vittayarukskul
+ */
+class MonteCarloSearch {
+
+    /** Weight of the exploration term of UCT. */
+    static final double EXPLORATION = 1.4;
+
+    /** Visits counted provisionally for each node on a path while its
+     *  playout runs. */
+    static final int VIRTUAL_LOSS = 3;
+
+    /** Number of earlier visits to a leaf (finished or not) needed for it
+     *  to be expanded. */
+    static final int EXPAND_VISITS = 1;
+
+    /** Greatest length of a playout, in plies. */
+    static final int MAX_PLAYOUT_PLIES = 200;
+
+    /** Greatest depth of the tree. */
+    static final int MAX_TREE_DEPTH = 128;
+
+    /** Greatest number of plies from the previous root to the new one for
+     *  the tree to be kept. */
+    static final int REUSE_PLIES = 2;
+
+    /** Scores of a win and of a draw. */
+    static final int WIN = 2, DRAW = 1;
+
+    /** A search using THREADS threads, whose random playouts start from
+     *  SEED. */
+    MonteCarloSearch(int threads, long seed) {
+        _threads = Math.max(1, threads);
+        _seed = seed;
+    }
+
+    /** Return the best move from the position on BOARD, which has at
+     *  least one legal move: the root move visited most.  Searches until
+     *  MOVETIME milliseconds have passed or, if PLAYOUTLIMIT is positive,
+     *  until there have been PLAYOUTLIMIT playouts.  BOARD is not
+     *  modified. */
+    long search(Board board, long moveTime, long playoutLimit) {
+        long start = System.currentTimeMillis();
+        Node root = null;
+        if (_root != null) {
+            root = find(_root, _rootBoard, TranspositionTable.key(board),
+                        REUSE_PLIES);
+        }
+        _root = root == null ? new Node(NONE) : root;
+        _rootBoard = new Board(board);
+        _reused = _root._visits;
+        _root.expand(_rootBoard, new MoveList());
+        _playouts.set(0);
+        _start = start;
+        _moveTime = moveTime;
+        _playoutLimit = playoutLimit;
+
+        Thread[] helpers = new Thread[_threads - 1];
+        for (int i = 0; i < helpers.length; i += 1) {
+            Worker worker = new Worker(_seed + i + 1);
+            helpers[i] = new Thread(worker::run);
+            helpers[i].setDaemon(true);
+            helpers[i].start();
+        }
+        new Worker(_seed).run();
+        for (Thread helper : helpers) {
+            try {
+                helper.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        _seed += _threads;
+
+        Node best = null;
+        for (Node child : _root._children) {
+            if (best == null || child._visits > best._visits) {
+                best = child;
+            }
+        }
+        return best._move;
+    }
+
+    /** Return the number of playouts in the last search. */
+    long playouts() {
+        return _playouts.get();
+    }
+
+    /** Return the number of visits to the root that the last search
+     *  inherited from earlier searches. */
+    int reusedVisits() {
+        return _reused;
+    }
+
+    /** Return the number of visits the last search made to the root move
+     *  MOVE, or 0 if there is no such move. */
+    int visits(long move) {
+        Node[] children = _root._children;
+        if (children != null) {
+            for (Node child : children) {
+                if (child._move == move) {
+                    return child._visits;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /** Return the node below NODE, whose position is on BOARD, whose
+     *  position has key KEY (see TranspositionTable.key), looking at most
+     *  PLIES plies down, or null if there is none.  BOARD is restored
+     *  before returning. */
+    private Node find(Node node, Board board, long key, int plies) {
+        if (TranspositionTable.key(board) == key) {
+            return node;
+        }
+        Node[] children = node._children;
+        if (plies == 0 || children == null) {
+            return null;
+        }
+        for (Node child : children) {
+            board.makeMove(child._move);
+            Node result = find(child, board, key, plies - 1);
+            board.unmakeMove();
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    /** Return true iff the search should stop. */
+    private boolean stopping() {
+        return System.currentTimeMillis() - _start >= _moveTime
+            || (_playoutLimit > 0 && _playouts.get() >= _playoutLimit);
+    }
+
+    /** A node of the tree, for the position reached by a move. */
+    private static final class Node {
+
+        /** A node for the position reached by MOVE. */
+        Node(long move) {
+            _move = move;
+        }
+
+        /** Add DELTA to my number of visits. */
+        void visit(int delta) {
+            VISITS.addAndGet(this, delta);
+        }
+
+        /** Add SCORE to my total score. */
+        void score(int score) {
+            SCORE.addAndGet(this, score);
+        }
+
+        /** Return my children, creating them from the legal moves on
+         *  BOARD (my position), using MOVES as scratch space, if I have
+         *  none yet. */
+        Node[] expand(Board board, MoveList moves) {
+            synchronized (this) {
+                if (_children == null) {
+                    moves.clear();
+                    board.getMoves(moves);
+                    Node[] children = new Node[moves.size()];
+                    for (int i = 0; i < children.length; i += 1) {
+                        children[i] = new Node(moves.get(i));
+                    }
+                    _children = children;
+                }
+                return _children;
+            }
+        }
+
+        /** Return the child of mine to descend to, by UCT: my first
+         *  unvisited child, if any, and otherwise the child whose upper
+         *  confidence bound is highest.  CHILDREN are my children. */
+        Node select(Node[] children) {
+            double logVisits = Math.log(Math.max(1, _visits));
+            Node best = null;
+            double bestBound = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                int visits = child._visits;
+                if (visits == 0) {
+                    return child;
+                }
+                double bound = child._score / (double) (WIN * visits)
+                    + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (bound > bestBound) {
+                    best = child;
+                    bestBound = bound;
+                }
+            }
+            return best;
+        }
+
+        /** The code of the move leading to me. */
+        private final long _move;
+        /** My children, one per legal move, or null if not expanded. */
+        private volatile Node[] _children;
+        /** Number of visits, including those of playouts in progress. */
+        private volatile int _visits;
+        /** Total score of my playouts for the player who made _move. */
+        private volatile int _score;
+
+        /** Atomic access to _visits. */
+        private static final AtomicIntegerFieldUpdater<Node> VISITS =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "_visits");
+        /** Atomic access to _score. */
+        private static final AtomicIntegerFieldUpdater<Node> SCORE =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "_score");
+    }
+
+    /** The iterations run by one thread. */
+    private class Worker {
+
+        /** A worker whose playouts are seeded by SEED. */
+        Worker(long seed) {
+            _random = new Random(seed);
+        }
+
+        /** Run iterations until the search stops. */
+        void run() {
+            while (!stopping()) {
+                _playouts.incrementAndGet();
+                iterate();
+            }
+        }
+
+        /** Descend the tree, play out a game, and record its result. */
+        private void iterate() {
+            _board.copy(_rootBoard);
+            PieceColor rootPlayer = _board.whoseMove();
+            Node node = _root;
+            node.visit(VIRTUAL_LOSS);
+            _path[0] = node;
+            int depth = 1;
+            PieceColor winner = null;
+            while (depth < MAX_TREE_DEPTH) {
+                Node[] children = node._children;
+                if (children == null) {
+                    if (node._visits - VIRTUAL_LOSS < EXPAND_VISITS) {
+                        break;
+                    }
+                    children = node.expand(_board, _moves);
+                }
+                if (children.length == 0) {
+                    winner = _board.whoseMove().opposite();
+                    break;
+                }
+                node = node.select(children);
+                node.visit(VIRTUAL_LOSS);
+                _board.makeMove(node._move);
+                _path[depth] = node;
+                depth += 1;
+            }
+            if (winner == null) {
+                winner = playout();
+            }
+            for (int d = 0; d < depth; d += 1) {
+                PieceColor mover = d % 2 == 1 ? rootPlayer
+                    : rootPlayer.opposite();
+                int score = winner == null ? DRAW
+                    : winner == mover ? WIN : 0;
+                _path[d].score(score);
+                _path[d].visit(1 - VIRTUAL_LOSS);
+            }
+        }
+
+        /** Play out the game on _board at random, and return the winner, or
+         *  null if the game lasts too long. */
+        private PieceColor playout() {
+            for (int ply = 0; ply < MAX_PLAYOUT_PLIES; ply += 1) {
+                _moves.clear();
+                _board.getMoves(_moves);
+                int n = _moves.size();
+                if (n == 0) {
+                    return _board.whoseMove().opposite();
+                }
+                int first = _random.nextInt(n);
+                long move = _moves.get(first);
+                if (MoveCode.isJump(move)) {
+                    for (int i = 1; i < n; i += 1) {
+                        long other = _moves.get((first + i) % n);
+                        if (MoveCode.legs(other) > MoveCode.legs(move)) {
+                            move = other;
+                        }
+                    }
+                }
+                _board.makeMove(move);
+            }
+            return null;
+        }
+
+        /** Source of random moves. */
+        private final Random _random;
+        /** The position being explored. */
+        private final Board _board = new Board();
+        /** Scratch space for moves. */
+        private final MoveList _moves = new MoveList();
+        /** The nodes on the current path, from the root. */
+        private final Node[] _path = new Node[MAX_TREE_DEPTH];
+    }
+
+    /** Number of threads. */
+    private final int _threads;
+    /** Seed for the next search's playouts. */
+    private long _seed;
+    /** The root of the tree, or null before the first search. */
+    private Node _root;
+    /** The position at _root. */
+    private Board _rootBoard;
+    /** Visits to the root inherited by the last search. */
+    private int _reused;
+    /** Playouts started in the current search. */
+    private final AtomicLong _playouts = new AtomicLong();
+    /** Time at which the current search started, and its time budget,
+     *  in milliseconds. */
+    private volatile long _start, _moveTime;
+    /** Playout budget of the current search, or 0 if unlimited. */
+    private volatile long _playoutLimit;
+}
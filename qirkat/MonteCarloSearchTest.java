@@ -0,0 +1,59 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the MonteCarloSearch class.
+ *  @author Lily Vittayarukskul
+ */
+public class MonteCarloSearchTest {
+
+    @Test
+    public void testWin() {
+        MonteCarloSearch search = new MonteCarloSearch(1, 1);
+        Board b = new Board();
+        b.setPieces("----- -w--- ----- --b-- -w---", PieceColor.WHITE);
+        long win = MoveCode.parse("b2-c2");
+        assertEquals(win, search.search(b, Long.MAX_VALUE, 5000));
+        assertEquals(5000, search.playouts());
+        assertTrue(search.visits(win) > 4000);
+    }
+
+    @Test
+    public void testReproducible() {
+        long[] visits = new long[2];
+        for (int i = 0; i < visits.length; i += 1) {
+            MonteCarloSearch search = new MonteCarloSearch(1, 3);
+            Board b = new Board();
+            long move = search.search(b, Long.MAX_VALUE, 2000);
+            assertTrue(b.legalMove(move));
+            visits[i] = search.visits(move);
+        }
+        assertEquals(visits[0], visits[1]);
+    }
+
+    @Test
+    public void testReuse() {
+        MonteCarloSearch search = new MonteCarloSearch(1, 5);
+        Board b = new Board();
+        long move = search.search(b, Long.MAX_VALUE, 5000);
+        assertEquals(0, search.reusedVisits());
+        b.makeMove(move);
+        b.makeMove(b.legalMoves().get(0));
+        search.search(b, Long.MAX_VALUE, 1000);
+        assertTrue(search.reusedVisits() > 0);
+        b.setPieces("----- -w--- ----- --b-- -w---", PieceColor.WHITE);
+        search.search(b, Long.MAX_VALUE, 1000);
+        assertEquals(0, search.reusedVisits());
+    }
+
+    @Test
+    public void testThreads() {
+        MonteCarloSearch search = new MonteCarloSearch(4, 7);
+        Board b = new Board();
+        b.setPieces("----- -w--- ----- --b-- -w---", PieceColor.WHITE);
+        long move = search.search(b, Long.MAX_VALUE, 20000);
+        assertEquals(MoveCode.parse("b2-c2"), move);
+        assertTrue(search.playouts() >= 20000);
+    }
+}
@@ -3,8 +3,7 @@ package qirkat;
 import static java.lang.Math.abs;
 
 import java.util.Formatter;
-import java.util.HashMap;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 
@@ -41,53 +40,70 @@ class Move {
      * one. Moves themselves are immutable, and for any possible move,
      * there is exactly one object of type Move. */
 
-    /* To avoid creating Move objects that are not needed, we maintain a
-     * a static variable, _staged containing a Move object.  The move
-     * factory methods then sets the fields of this object before looking to
-     * to see if there is already a Move object with the same parameters.
-     * If there is, the move methods will simply return it, thus allowing
-     * _staged to be reused on the next call without having to create a
-     * new Move object.  Otherwise, we use the _staged object itself as the
-     * new Move, and set the variable to null so that we create a new
-     * Move on the next call to move. There is a drawback: since there
-     * is at most one _staged object at any time, at most one call to move
-     * may execute simultaneously.  Otherwise, two the methods may attempt
-     * to use the same Move object for two different Moves, which clearly
-     * will not work.  Therefore, we indicate in the comments that a number
-     * of the operations are not "thread safe". Fortunately, you'll not run
-     * into this problem as long as you don't do anything fancy (such as
-     * trying to make your AI a parallel program).
-     */
+    /* So that any number of threads may call the factory at once, the
+     * interned Moves are kept in tables that need no locking.  All single
+     * moves and jumps (and vestigial moves) are created when this class
+     * is initialized and kept in SINGLES, indexed by their starting and
+     * ending squares.  A multi-jump is determined by its first jump and
+     * the (interned) rest of the jump, so each jump keeps, in _prefixes,
+     * the multi-jumps that end with it, indexed by their starting square.
+     * A thread that finds no entry there creates a new Move and installs
+     * it with a compare-and-set; if another thread got there first, it
+     * uses that thread's Move instead, so there is still only one Move
+     * for each distinct move. */
 
     /** The move constructor, made private to prevent its use except in
-     *  this class. */
-    private Move() {
+     *  this class.  Creates the move COL0 ROW0 - COL1 ROW1 - NEXTJUMP. */
+    private Move(char col0, char row0, char col1, char row1,
+                 Move nextJump) {
+        assert col0 >= 'a' && row0 >= '1' && col1 >= 'a' && row1 >= '1'
+            && col0 <= 'e' && row0 <= '5' && col1 <= 'e' &&  row1 <= '5';
+        _col0 = col0;
+        _row0 = row0;
+        _col1 = col1;
+        _row1 = row1;
+        _fromIndex = (byte) index(col0, row0);
+        _toIndex = (byte) index(col1, row1);
+        _isJump = abs(col0 - col1) > 1 || abs(row0 - row1) > 1;
+        _nextJump = nextJump;
+        _prefixes = _isJump ? new AtomicReferenceArray<>(NUM_SQUARES) : null;
+        _code = MoveCode.encode(this);
+        assert (_isJump
+                && (nextJump == null
+                    || (nextJump.isJump()
+                        && col1 == nextJump.col0()
+                        && row1 == nextJump.row0())))
+            || (!_isJump && nextJump == null);
     }
 
     /** A factory method that returns a Move from COL0 ROW0 to COL1 ROW1,
      *  followed by NEXTJUMP, if this move is a jump. Assumes the column
      *  and row designations are valid and that NEXTJUMP is null for a
-     *  non-capturing move.  Not thread-safe. */
+     *  non-capturing move. */
     static Move move(char col0, char row0, char col1, char row1,
                      Move nextJump) {
-        if (_staged == null) {
-            _staged = new Move();
+        int from = index(col0, row0), to = index(col1, row1);
+        Move first = SINGLES[from * NUM_SQUARES + to];
+        if (nextJump == null) {
+            return first;
         }
-        _staged.set(col0, row0, col1, row1, nextJump);
-        if (_staged.isJump() && nextJump != null && !nextJump.isJump()) {
-            throw new IllegalArgumentException("bad jump");
-        } else if (!_staged.isJump() && nextJump != null) {
+        if (!first.isJump() || !nextJump.isJump()
+            || nextJump.fromIndex() != to) {
             throw new IllegalArgumentException("bad jump");
         }
-        Move result = _internedMoves.computeIfAbsent(_staged, IDENTITY);
-        if (result == _staged) {
-            _staged = null;
+        Move result = nextJump._prefixes.get(from);
+        if (result == null) {
+            Move fresh = new Move(col0, row0, col1, row1, nextJump);
+            if (nextJump._prefixes.compareAndSet(from, null, fresh)) {
+                result = fresh;
+            } else {
+                result = nextJump._prefixes.get(from);
+            }
         }
         return result;
     }
 
-    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1).
-     *  Not thread-safe. */
+    /** Return a single move or jump from (COL0, ROW0) to (COL1, ROW1). */
     static Move move(char col0, char row0, char col1, char row1) {
         return move(col0, row0, col1, row1, null);
     }
@@ -260,9 +276,19 @@ class Move {
         return _nextJump;
     }
 
+    /** Return the packed form of this move's full path, as described in
+     *  MoveCode, or MoveCode.NONE if this is vestigial or is not a move
+     *  along the lines of the board. */
+    long code() {
+        return _code;
+    }
+
     @Override
     public int hashCode() {
-        return (_fromIndex << 5) | _toIndex;
+        if (_code == MoveCode.NONE) {
+            return (_fromIndex << 5) | _toIndex;
+        }
+        return Long.hashCode(_code);
     }
 
     @Override
@@ -321,51 +347,45 @@ class Move {
         out.format(outString);
     }
 
-    /** Set me to COL0 ROW0 - COL1 ROW1 - NEXTJUMP. */
-    private void set(char col0, char row0, char col1, char row1,
-                     Move nextJump) {
-        assert col0 >= 'a' && row0 >= '1' && col1 >= 'a' && row1 >= '1'
-            && col0 <= 'e' && row0 <= '5' && col1 <= 'e' &&  row1 <= '5';
-        _col0 = col0;
-        _row0 = row0;
-        _col1 = col1;
-        _row1 = row1;
-        _fromIndex = (byte) index(col0, row0);
-        _toIndex = (byte) index(col1, row1);
-        _isJump = abs(col0 - col1) > 1 || abs(row0 - row1) > 1;
-        _nextJump = nextJump;
-        assert (_isJump
-                && (nextJump == null
-                    || (nextJump.isJump()
-                        && col1 == nextJump.col0()
-                        && row1 == nextJump.row0())))
-            || (!_isJump && nextJump == null);
-    }
-
     /** Linearized indices. */
-    private byte _fromIndex, _toIndex;
+    private final byte _fromIndex, _toIndex;
 
     /** True iff move is a jump. */
-    private boolean _isJump;
+    private final boolean _isJump;
 
     /** From and to squares, or 0s if a pass. */
-    private char _col0, _row0, _col1, _row1;
+    private final char _col0, _row0, _col1, _row1;
 
     /** For a jump, the Move representing the jumps following the
      *  initial jump. */
-    private Move _nextJump;
+    private final Move _nextJump;
+
+    /** My full path in packed form (see code()). */
+    private final long _code;
 
     /* Used for the Move factory. */
 
-    /** Holds the next Move object to be added to _internedMoves.
-     *  The factory method move tentatively fills it in, and then returns
-     *  it if it is unique (resetting _staged to null). */
-    private static Move _staged;
+    /** Number of squares on the board. */
+    private static final int NUM_SQUARES = SIDE * SIDE;
 
-    /** The set of all distinct moves generated so far. */
-    private static HashMap<Move, Move> _internedMoves = new HashMap<>();
+    /** For a jump, the multi-jumps whose first jump is followed by me,
+     *  indexed by the linearized index of their starting square.  Null
+     *  for a non-capturing move. */
+    private final AtomicReferenceArray<Move> _prefixes;
 
-    /** The identity function on Moves. */
-    static final Function<Move, Move> IDENTITY = k -> k;
+    /** All single moves and jumps, including vestigial moves: the move
+     *  from linearized index K0 to K1 is SINGLES[K0 * NUM_SQUARES + K1].
+     */
+    private static final Move[] SINGLES =
+        new Move[NUM_SQUARES * NUM_SQUARES];
+
+    static {
+        for (int k0 = 0; k0 < NUM_SQUARES; k0 += 1) {
+            for (int k1 = 0; k1 < NUM_SQUARES; k1 += 1) {
+                SINGLES[k0 * NUM_SQUARES + k1] =
+                    new Move(col(k0), row(k0), col(k1), row(k1), null);
+            }
+        }
+    }
 
 }
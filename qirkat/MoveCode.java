@@ -0,0 +1,223 @@
+package qirkat;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static qirkat.Move.*;
+import static qirkat.ValidMoves.*;
+
+/** Operations on moves packed into longs.  A packed move (or "code")
+ *  holds the linearized index of its starting square, whether it is a
+ *  capture, the number of legs, and the direction (as numbered in
+ *  ValidMoves) of each leg.  A non-capturing move has one leg, which
+ *  goes to the adjacent square in its direction; each leg of a capture
+ *  lands two squares away.  Codes let the AI generate, store, and make
+ *  moves without creating Move objects.
+ *  @author Lily Vittayarukskul
+ */
+final class MoveCode {
+
+    /** A value that is not the code of any move. */
+    static final long NONE = 0;
+
+    /** Number of bits holding the starting square. */
+    private static final int FROM_BITS = 5;
+    /** Bit that is set in the code of a capture. */
+    private static final long JUMP_BIT = 1L << FROM_BITS;
+    /** Position and width of the leg count. */
+    private static final int LEGS_SHIFT = FROM_BITS + 1, LEGS_BITS = 4;
+    /** Position of the first leg's direction and the width of each. */
+    private static final int DIR_SHIFT = LEGS_SHIFT + LEGS_BITS,
+        DIR_BITS = 3;
+    /** Maximum number of legs in a code. */
+    static final int MAX_LEGS = (1 << LEGS_BITS) - 1;
+
+    /** Masks for extracting fields. */
+    private static final int FROM_MASK = (1 << FROM_BITS) - 1,
+        DIR_MASK = (1 << DIR_BITS) - 1;
+
+    /** Not instantiable. */
+    private MoveCode() {
+    }
+
+    /** Return the code of the non-capturing move from square FROM in
+     *  direction DIR. */
+    static long step(int from, int dir) {
+        return from | (1L << LEGS_SHIFT) | ((long) dir << DIR_SHIFT);
+    }
+
+    /** Return the code of a capture starting at FROM that has no legs yet.
+     *  It becomes a valid code when extended. */
+    static long jumpStart(int from) {
+        return from | JUMP_BIT;
+    }
+
+    /** Return the capture CODE followed by one more leg in direction
+     *  DIR. */
+    static long extend(long code, int dir) {
+        int legs = legs(code);
+        assert isJump(code) && legs < MAX_LEGS;
+        return (code + (1L << LEGS_SHIFT))
+            | ((long) dir << (DIR_SHIFT + legs * DIR_BITS));
+    }
+
+    /** Return the starting square of CODE. */
+    static int from(long code) {
+        return (int) code & FROM_MASK;
+    }
+
+    /** Return true iff CODE is a capture. */
+    static boolean isJump(long code) {
+        return (code & JUMP_BIT) != 0;
+    }
+
+    /** Return the number of legs in CODE. */
+    static int legs(long code) {
+        return (int) (code >>> LEGS_SHIFT) & MAX_LEGS;
+    }
+
+    /** Return the direction of leg I of CODE. */
+    static int direction(long code, int i) {
+        return (int) (code >>> (DIR_SHIFT + i * DIR_BITS)) & DIR_MASK;
+    }
+
+    /** Return the square on which CODE ends. */
+    static int to(long code) {
+        int k = from(code);
+        int[] table = isJump(code) ? LANDINGS : NEIGHBORS;
+        for (int i = 0, n = legs(code); i < n; i += 1) {
+            k = table[k * NUM_DIRECTIONS + direction(code, i)];
+        }
+        return k;
+    }
+
+    /** Return the mask of squares captured by CODE. */
+    static int captured(long code) {
+        if (!isJump(code)) {
+            return 0;
+        }
+        int result = 0;
+        int k = from(code);
+        for (int i = 0, n = legs(code); i < n; i += 1) {
+            int d = direction(code, i);
+            result |= 1 << NEIGHBORS[k * NUM_DIRECTIONS + d];
+            k = LANDINGS[k * NUM_DIRECTIONS + d];
+        }
+        return result;
+    }
+
+    /** Return the Move denoted by CODE, or null if CODE is NONE. */
+    static Move toMove(long code) {
+        if (code == NONE) {
+            return null;
+        }
+        return toMove(code, 0, from(code));
+    }
+
+    /** Return the Move consisting of legs I and following of CODE,
+     *  starting from square K. */
+    private static Move toMove(long code, int i, int k) {
+        if (i == legs(code)) {
+            return null;
+        }
+        int[] table = isJump(code) ? LANDINGS : NEIGHBORS;
+        int next = table[k * NUM_DIRECTIONS + direction(code, i)];
+        return move(col(k), row(k), col(next), row(next),
+                    toMove(code, i + 1, next));
+    }
+
+    /** Return the code for MOV, or NONE if MOV is null or is not a move
+     *  along the lines of the board. */
+    static long of(Move mov) {
+        return mov == null ? NONE : mov.code();
+    }
+
+    /** Return the code for MOV, computed from its legs, or NONE if MOV is
+     *  not a move along the lines of the board.  Used to initialize
+     *  Move.code(). */
+    static long encode(Move mov) {
+        if (mov.isVestigial()) {
+            return NONE;
+        }
+        long code;
+        int[] table;
+        if (mov.isJump()) {
+            code = jumpStart(mov.fromIndex());
+            table = LANDINGS;
+        } else {
+            code = mov.fromIndex();
+            table = NEIGHBORS;
+        }
+        for (Move leg = mov; leg != null; leg = leg.jumpTail()) {
+            int d = direction(table, leg.fromIndex(), leg.toIndex());
+            if (d == -1 || legs(code) == MAX_LEGS) {
+                return NONE;
+            }
+            if (mov.isJump()) {
+                code = extend(code, d);
+            } else {
+                code = step(mov.fromIndex(), d);
+            }
+        }
+        return code;
+    }
+
+    /** Return the code of the move denoted by STR, in the notation of
+     *  Move.parseMove, without creating a Move.  Returns NONE if STR is
+     *  well formed but is not a move along the lines of the board. */
+    static long parse(String str) {
+        Matcher mat = CODE_PATTERN.matcher(str);
+        if (!mat.matches()) {
+            throw new IllegalArgumentException("bad move denotation");
+        }
+        int k0 = index(str.charAt(0), str.charAt(1)),
+            k1 = index(str.charAt(3), str.charAt(4));
+        boolean jump = direction(NEIGHBORS, k0, k1) == -1;
+        int[] table = jump ? LANDINGS : NEIGHBORS;
+        long code = jump ? jumpStart(k0) : NONE;
+        for (int p = 3; p < str.length(); p += SQUARE_WIDTH) {
+            int k = index(str.charAt(p), str.charAt(p + 1));
+            int d = direction(table, k0, k);
+            if (d == -1 || (!jump && p > SQUARE_WIDTH)
+                || legs(code) == MAX_LEGS) {
+                return NONE;
+            }
+            code = jump ? extend(code, d) : step(k0, d);
+            k0 = k;
+        }
+        return code;
+    }
+
+    /** Return the standard denotation of the move whose code is CODE, as
+     *  produced by Move.toString(). */
+    static String toString(long code) {
+        StringBuilder out = new StringBuilder();
+        int k = from(code);
+        int[] table = isJump(code) ? LANDINGS : NEIGHBORS;
+        out.append(col(k)).append(row(k));
+        for (int i = 0, n = legs(code); i < n; i += 1) {
+            k = table[k * NUM_DIRECTIONS + direction(code, i)];
+            out.append('-').append(col(k)).append(row(k));
+        }
+        return out.toString();
+    }
+
+    /** Pattern for the denotation of a move. */
+    private static final Pattern CODE_PATTERN =
+        Pattern.compile("[a-e][1-5](?:-[a-e][1-5])+");
+
+    /** Number of characters taken by each square after the first in the
+     *  denotation of a move, including the hyphen. */
+    private static final int SQUARE_WIDTH = 3;
+
+    /** Return the direction d such that TABLE[FROM * NUM_DIRECTIONS + d]
+     *  is TO, or -1 if there is none. */
+    private static int direction(int[] table, int from, int to) {
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            if (table[from * NUM_DIRECTIONS + d] == to) {
+                return d;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,140 @@
+package qirkat;
+
+import java.util.Arrays;
+
+/** A list of moves in the packed form described in MoveCode.  Unlike
+ *  ArrayList<Move>, a MoveList holds its moves in a primitive array that
+ *  is reused after clear(), so a caller that keeps one MoveList per ply
+ *  can generate moves without creating garbage.  One can also create
+ *  arrays of them, which one cannot do with ArrayList<Move>.
+ *  @author Lily Vittayarukskul
+ */
+class MoveList {
+
+    /** Initial capacity of a MoveList. */
+    static final int DEFAULT_CAPACITY = 64;
+
+    /** An empty list. */
+    MoveList() {
+        _moves = new long[DEFAULT_CAPACITY];
+    }
+
+    /** Return the number of moves in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Return true iff I am empty. */
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** Return move #K, 0 <= K < size(). */
+    long get(int k) {
+        assert 0 <= k && k < _size;
+        return _moves[k];
+    }
+
+    /** Add the move with code MOVE to my end. */
+    void add(long move) {
+        if (_size == _moves.length) {
+            _moves = Arrays.copyOf(_moves, 2 * _size);
+        }
+        _moves[_size] = move;
+        _size += 1;
+        _indexed = false;
+    }
+
+    /** Add all moves in MOVES to my end. */
+    void addAll(MoveList moves) {
+        for (int i = 0; i < moves._size; i += 1) {
+            add(moves._moves[i]);
+        }
+    }
+
+    /** Reorder my moves into decreasing order of KEYS, where KEYS[k] is
+     *  the key of my move #k, keeping moves with equal keys in their
+     *  current order.  KEYS is permuted along with my moves. */
+    void sort(int[] keys) {
+        for (int i = 1; i < _size; i += 1) {
+            long move = _moves[i];
+            int key = keys[i];
+            int j;
+            for (j = i; j > 0 && keys[j - 1] < key; j -= 1) {
+                _moves[j] = _moves[j - 1];
+                keys[j] = keys[j - 1];
+            }
+            _moves[j] = move;
+            keys[j] = key;
+        }
+        _indexed = false;
+    }
+
+    /** Remove all my moves. */
+    void clear() {
+        _size = 0;
+        _indexed = false;
+    }
+
+    /** Return true iff I contain the move with code MOVE.  Takes
+     *  constant time after a call to index(), until I am next
+     *  modified. */
+    boolean contains(long move) {
+        if (_indexed) {
+            int mask = _index.length - 1;
+            for (int h = hash(move) & mask; _index[h] != MoveCode.NONE;
+                 h = (h + 1) & mask) {
+                if (_index[h] == move) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int i = 0; i < _size; i += 1) {
+            if (_moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Build a hash index of my moves, so that contains() takes constant
+     *  time until I am next modified. */
+    void index() {
+        int capacity = Integer.highestOneBit(2 * _size + 1) * 2;
+        if (_index == null || _index.length < capacity) {
+            _index = new long[Math.max(capacity, DEFAULT_CAPACITY)];
+        } else {
+            Arrays.fill(_index, MoveCode.NONE);
+        }
+        int mask = _index.length - 1;
+        for (int i = 0; i < _size; i += 1) {
+            int h = hash(_moves[i]) & mask;
+            while (_index[h] != MoveCode.NONE) {
+                h = (h + 1) & mask;
+            }
+            _index[h] = _moves[i];
+        }
+        _indexed = true;
+    }
+
+    /** Return a hash of the code MOVE for use in _index. */
+    private static int hash(long move) {
+        long h = move * HASH_MULTIPLIER;
+        return (int) (h >>> Integer.SIZE);
+    }
+
+    /** The codes of my moves, in positions 0 .. _size - 1. */
+    private long[] _moves;
+    /** Number of moves in me. */
+    private int _size;
+
+    /** An open-addressed hash table of my moves, with MoveCode.NONE in
+     *  the unused entries, valid when _indexed. */
+    private long[] _index;
+    /** True iff _index reflects my current contents. */
+    private boolean _indexed;
+
+    /** Multiplier used to scramble codes for _index. */
+    private static final long HASH_MULTIPLIER = 0x9e3779b97f4a7c15L;
+}
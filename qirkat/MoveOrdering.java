@@ -0,0 +1,125 @@
+package qirkat;
+
+import static qirkat.PieceColor.*;
+import static qirkat.ValidMoves.*;
+
+/** Puts the moves generated during a search in the order in which they
+ *  are to be tried, so that alpha-beta cutoffs come as early as possible.
+ *  First comes the hash move (the best move found by an earlier search of
+ *  the same position), then captures, most pieces taken first, then the
+ *  killer moves for the ply (quiet moves that recently caused cutoffs at
+ *  the same ply), and finally the other quiet moves, in decreasing order
+ *  of their history scores, which accumulate over the search as they
+ *  cause cutoffs anywhere.  Each searching thread needs its own
+ *  MoveOrdering.
+ *  @author Lily Vittayarukskul
+ */
+class MoveOrdering {
+
+    /** Number of killer moves kept for each ply. */
+    static final int KILLERS = 2;
+
+    /** Sort key of the hash move. */
+    private static final int HASH_KEY = Integer.MAX_VALUE;
+    /** Sort key of a capture, before adding the number of pieces taken. */
+    private static final int CAPTURE_KEY = 1 << 29;
+    /** Sort key of the first killer move; each later one is one less. */
+    private static final int KILLER_KEY = 1 << 28;
+    /** History scores are halved once one of them exceeds this. */
+    private static final int HISTORY_LIMIT = 1 << 20;
+
+    /** A MoveOrdering for searches of at most MAXPLY plies. */
+    MoveOrdering(int maxPly) {
+        _killers = new long[(maxPly + 1) * KILLERS];
+        _keys = new int[maxPly + 1][MoveList.DEFAULT_CAPACITY];
+    }
+
+    /** Prepare for a new search: forget the killer moves, and reduce the
+     *  weight of the history gathered by earlier searches. */
+    void newSearch() {
+        for (int i = 0; i < _killers.length; i += 1) {
+            _killers[i] = MoveCode.NONE;
+        }
+        age();
+    }
+
+    /** Reorder MOVES, which were generated at PLY for player MOVER, for
+     *  searching, with HASHMOVE (MoveCode.NONE if none) first if it is
+     *  present. */
+    void order(MoveList moves, long hashMove, int ply, PieceColor mover) {
+        int n = moves.size();
+        if (n < 2) {
+            return;
+        }
+        if (_keys[ply].length < n) {
+            _keys[ply] = new int[2 * n];
+        }
+        int[] keys = _keys[ply];
+        int[] history = mover == WHITE ? _whiteHistory : _blackHistory;
+        for (int i = 0; i < n; i += 1) {
+            long move = moves.get(i);
+            if (move == hashMove) {
+                keys[i] = HASH_KEY;
+            } else if (MoveCode.isJump(move)) {
+                keys[i] = CAPTURE_KEY + MoveCode.legs(move);
+            } else {
+                keys[i] = history[historyIndex(move)];
+                for (int k = 0; k < KILLERS; k += 1) {
+                    if (_killers[ply * KILLERS + k] == move) {
+                        keys[i] = KILLER_KEY - k;
+                        break;
+                    }
+                }
+            }
+        }
+        moves.sort(keys);
+    }
+
+    /** Note that MOVE, made by MOVER at PLY with DEPTH plies remaining,
+     *  caused a cutoff.  Quiet moves become the first killer for the ply,
+     *  and gain history in proportion to the size of the subtree they
+     *  cut off. */
+    void cutoff(long move, int depth, int ply, PieceColor mover) {
+        if (MoveCode.isJump(move)) {
+            return;
+        }
+        int k0 = ply * KILLERS;
+        if (_killers[k0] != move) {
+            for (int k = KILLERS - 1; k > 0; k -= 1) {
+                _killers[k0 + k] = _killers[k0 + k - 1];
+            }
+            _killers[k0] = move;
+        }
+        int[] history = mover == WHITE ? _whiteHistory : _blackHistory;
+        int i = historyIndex(move);
+        history[i] += depth * depth;
+        if (history[i] > HISTORY_LIMIT) {
+            age();
+        }
+    }
+
+    /** Halve all history scores. */
+    private void age() {
+        for (int i = 0; i < _whiteHistory.length; i += 1) {
+            _whiteHistory[i] /= 2;
+            _blackHistory[i] /= 2;
+        }
+    }
+
+    /** Return the index in the history tables of the quiet move MOVE. */
+    private static int historyIndex(long move) {
+        return MoveCode.from(move) * NUM_DIRECTIONS
+            + MoveCode.direction(move, 0);
+    }
+
+    /** Killer moves: _killers[ply * KILLERS + k] is the kth killer at
+     *  ply, most recent first. */
+    private final long[] _killers;
+    /** History scores of the quiet moves of each player, indexed by
+     *  historyIndex. */
+    private final int[]
+        _whiteHistory = new int[NUM_INDICES * NUM_DIRECTIONS],
+        _blackHistory = new int[NUM_INDICES * NUM_DIRECTIONS];
+    /** Buffers for the sort keys of the moves at each ply. */
+    private final int[][] _keys;
+}
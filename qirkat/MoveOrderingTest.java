@@ -0,0 +1,49 @@
+package qirkat;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the MoveOrdering class.
+ *  @author Lily Vittayarukskul
+ */
+public class MoveOrderingTest {
+
+    @Test
+    public void testCaptures() {
+        Board b = new Board();
+        b.setPieces("----- -w--- -bbb- ----- -----", PieceColor.WHITE);
+        MoveList moves = new MoveList();
+        b.getMoves(moves);
+        MoveOrdering ordering = new MoveOrdering(4);
+        ordering.order(moves, MoveCode.NONE, 0, PieceColor.WHITE);
+        for (int i = 1; i < moves.size(); i += 1) {
+            assertTrue(MoveCode.legs(moves.get(i - 1))
+                       >= MoveCode.legs(moves.get(i)));
+        }
+        long last = moves.get(moves.size() - 1);
+        ordering.order(moves, last, 0, PieceColor.WHITE);
+        assertEquals(last, moves.get(0));
+    }
+
+    @Test
+    public void testKillersAndHistory() {
+        Board b = new Board();
+        MoveList moves = new MoveList();
+        b.getMoves(moves);
+        int n = moves.size();
+        long killer = moves.get(n - 1), other = moves.get(n - 2);
+        MoveOrdering ordering = new MoveOrdering(4);
+        ordering.cutoff(other, 1, 2, PieceColor.WHITE);
+        ordering.cutoff(killer, 1, 1, PieceColor.WHITE);
+        ordering.order(moves, MoveCode.NONE, 1, PieceColor.WHITE);
+        assertEquals(killer, moves.get(0));
+        assertEquals(other, moves.get(1));
+        assertEquals(n, moves.size());
+        ordering.order(moves, other, 1, PieceColor.WHITE);
+        assertEquals(other, moves.get(0));
+        assertEquals(killer, moves.get(1));
+        ordering.newSearch();
+        ordering.order(moves, MoveCode.NONE, 1, PieceColor.BLACK);
+        assertEquals(n, moves.size());
+    }
+}
@@ -117,4 +117,62 @@ public class MoveTest {
         assertEquals('b', m2.jumpedCol());
         assertEquals('d', m3.jumpedCol());
     }
+
+    @Test
+    public void testCodes() {
+        for (String s : new String[] { "a3-b2", "a3-a5", "c3-d3",
+                                       "a3-a5-c3-e1", "b2-b4-d2-d4" }) {
+            Move m = parseMove(s);
+            long code = MoveCode.of(m);
+            assertEquals(m.isJump(), MoveCode.isJump(code));
+            assertEquals(m.fromIndex(), MoveCode.from(code));
+            assertEquals(m, MoveCode.toMove(code));
+        }
+        long code = MoveCode.of(parseMove("b2-b4-d2-d4"));
+        assertEquals(3, MoveCode.legs(code));
+        assertEquals(index('d', '4'), MoveCode.to(code));
+        assertEquals((1 << index('b', '3')) | (1 << index('c', '3'))
+                     | (1 << index('d', '3')), MoveCode.captured(code));
+        assertEquals(MoveCode.NONE, MoveCode.of(move('a', '1', 'b', '3')));
+    }
+
+    @Test
+    public void testConcurrentIntern() throws InterruptedException {
+        final int nThreads = 8;
+        final Move[] results = new Move[nThreads];
+        Thread[] threads = new Thread[nThreads];
+        for (int t = 0; t < nThreads; t += 1) {
+            final int id = t;
+            threads[t] = new Thread(() -> {
+                results[id] = parseMove("e1-c1-a1-a3-c5-e5-e3");
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Move m : results) {
+            assertSame(results[0], m);
+        }
+        assertSame(results[0], parseMove("e1-c1-a1-a3-c5-e5-e3"));
+    }
+
+    @Test
+    public void testCodeStrings() {
+        for (String s : new String[] { "a3-b2", "c3-c5", "e1-c1-a1-a3-c5" }) {
+            long code = MoveCode.parse(s);
+            assertEquals(parseMove(s).code(), code);
+            assertEquals(s, MoveCode.toString(code));
+        }
+        assertEquals(MoveCode.NONE, MoveCode.parse("a1-c2"));
+        assertEquals(MoveCode.NONE, MoveCode.parse("a1-a2-a3"));
+    }
+
+    @Test
+    public void testPathHash() {
+        Move m1 = parseMove("a1-a3-c3");
+        Move m2 = parseMove("a1-a3-a5");
+        assertNotEquals(m1, m2);
+        assertNotEquals(m1.hashCode(), m2.hashCode());
+    }
 }
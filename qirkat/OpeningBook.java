@@ -0,0 +1,79 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+/** A book of opening moves: the move to make in each of a set of
+ *  positions near the start of the game, as chosen by deep searches by
+ *  OpeningBookBuilder.  The book is kept in a file, which is mapped into
+ *  memory read-only, so that opening it costs almost nothing.
+ *
+ *  After a header, the file holds one entry per position: the position's
+ *  key (see TranspositionTable.key) and the code (see MoveCode) of the
+ *  move to make there, as two longs.  Entries are sorted by key, so that
+ *  a position's entry is found by binary search.
+ *  @author Lily Vittayarukskul
+ */
+class OpeningBook {
+
+    /** The first value in an opening-book file. */
+    static final int MAGIC = 0x51424b31;
+
+    /** Bytes in a file's header: MAGIC and the number of entries. */
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    /** Number of longs in an entry: a key and a move. */
+    static final int ENTRY_LONGS = 2;
+
+    /** The opening book in FILE, as written by OpeningBookBuilder. */
+    OpeningBook(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("not an opening book");
+            }
+            _size = input.readInt();
+            long bytes = (long) _size * ENTRY_LONGS * Long.BYTES;
+            if (_size < 0 || HEADER_BYTES + bytes > channel.size()) {
+                throw new IOException("truncated opening book");
+            }
+            _entries = channel.map(FileChannel.MapMode.READ_ONLY,
+                                   HEADER_BYTES, bytes).asLongBuffer();
+        }
+    }
+
+    /** Return the number of positions in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the code of the move I give for the position on BOARD, or
+     *  MoveCode.NONE if I have none, or if the move I have is not legal
+     *  there (which can only happen if two positions have the same
+     *  key). */
+    long move(Board board) {
+        long key = TranspositionTable.key(board);
+        int lo = 0, hi = _size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long midKey = _entries.get(mid * ENTRY_LONGS);
+            if (midKey < key) {
+                lo = mid + 1;
+            } else if (midKey > key) {
+                hi = mid - 1;
+            } else {
+                long move = _entries.get(mid * ENTRY_LONGS + 1);
+                return board.legalMove(move) ? move : MoveCode.NONE;
+            }
+        }
+        return MoveCode.NONE;
+    }
+
+    /** Number of entries. */
+    private final int _size;
+    /** The entries, as alternating keys and moves. */
+    private final LongBuffer _entries;
+}
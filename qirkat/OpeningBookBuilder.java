@@ -0,0 +1,186 @@
+package qirkat;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static qirkat.PieceColor.*;
+import static qirkat.OpeningBook.*;
+
+/** Builds an OpeningBook by searching the positions near the start of
+ *  the game.  The book is built for each player in turn, ply by ply: in
+ *  the positions in which that player is to move, it is given the move
+ *  found by a deep search, and only that move is followed; in the others,
+ *  every move is followed.  So the book covers every position that a
+ *  player who follows it can meet in the first few plies.  The searches
+ *  at each ply are independent, and are divided among the threads of a
+ *  ForkJoinPool, all of which share one transposition table.
+ *
+ *  Usage: java qirkat.OpeningBookBuilder K FILE [MSEC [THREADS]] builds a
+ *  book of the first K plies into FILE, searching each position for MSEC
+ *  milliseconds (by default, DEFAULT_MOVE_TIME) with THREADS threads (by
+ *  default, one per processor).
+ *  @author Lily Vittayarukskul
+ */
+class OpeningBookBuilder {
+
+    /** Default search time per position, in milliseconds. */
+    static final long DEFAULT_MOVE_TIME = 2000;
+
+    /** Size of the transposition table shared by the searches, in
+     *  megabytes. */
+    static final int TABLE_MEGABYTES = 64;
+
+    /** A builder of a book for the first PLIES plies, searching each
+     *  position for MOVETIME milliseconds, using THREADS threads. */
+    OpeningBookBuilder(int plies, long moveTime, int threads) {
+        _plies = plies;
+        _moveTime = moveTime;
+        _pool = new ForkJoinPool(threads);
+        _table = new TranspositionTable(TABLE_MEGABYTES);
+        Evaluator evaluator = new Evaluator();
+        _searchers = ThreadLocal.withInitial(
+            () -> new Searcher(_table, null, evaluator, () -> false));
+    }
+
+    /** Build my book. */
+    void build() {
+        build(WHITE);
+        build(BLACK);
+    }
+
+    /** Return the number of positions in my book. */
+    int size() {
+        return _book.size();
+    }
+
+    /** Write my book to the file named NAME in the form read by
+     *  OpeningBook. */
+    void write(String name) throws IOException {
+        long[] keys = new long[_book.size()];
+        int n = 0;
+        for (long key : _book.keySet()) {
+            keys[n] = key;
+            n += 1;
+        }
+        Arrays.sort(keys);
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream(
+                 new FileOutputStream(name)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(keys.length);
+            for (long key : keys) {
+                out.writeLong(key);
+                out.writeLong(_book.get(key));
+            }
+        }
+    }
+
+    /** Add to my book the positions PLAYER may meet by following it. */
+    private void build(PieceColor player) {
+        List<Board> level = new ArrayList<>();
+        level.add(new Board());
+        HashSet<Long> seen = new HashSet<>();
+        for (int ply = 0; ply < _plies && !level.isEmpty(); ply += 1) {
+            if (level.get(0).whoseMove() == player) {
+                _pool.invoke(new Search(level, 0, level.size()));
+            }
+            List<Board> next = new ArrayList<>();
+            for (Board board : level) {
+                MoveList moves = board.legalMoves();
+                for (int i = 0; i < moves.size(); i += 1) {
+                    long move = moves.get(i);
+                    if (board.whoseMove() == player && moves.size() > 1
+                        && move != _book.get(TranspositionTable.key(board))) {
+                        continue;
+                    }
+                    Board child = new Board(board);
+                    child.makeMove(move);
+                    if (!child.legalMoves().isEmpty()
+                        && seen.add(TranspositionTable.key(child))) {
+                        next.add(child);
+                    }
+                }
+            }
+            level = next;
+        }
+    }
+
+    /** The searches of a range of positions at one ply. */
+    private class Search extends RecursiveAction {
+
+        /** The searches of LEVEL[LO .. HI-1]. */
+        Search(List<Board> level, int lo, int hi) {
+            _level = level;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Search(_level, _lo, mid),
+                          new Search(_level, mid, _hi));
+                return;
+            }
+            Board board = _level.get(_lo);
+            long key = TranspositionTable.key(board);
+            MoveList moves = board.legalMoves();
+            if (moves.size() > 1 && !_book.containsKey(key)) {
+                _book.put(key, _searchers.get().search(new Board(board),
+                                                       moves, 1,
+                                                       _moveTime, 0));
+            }
+        }
+
+        /** The positions at this ply. */
+        private final List<Board> _level;
+        /** The range of _level that I search. */
+        private final int _lo, _hi;
+    }
+
+    /** Build the book described by ARGS (see the class comment). */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: java qirkat.OpeningBookBuilder K FILE"
+                               + " [MSEC [THREADS]]");
+            System.exit(1);
+        }
+        long moveTime =
+            args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_MOVE_TIME;
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+            : Runtime.getRuntime().availableProcessors();
+        OpeningBookBuilder builder =
+            new OpeningBookBuilder(Integer.parseInt(args[0]), moveTime,
+                                   threads);
+        long start = System.currentTimeMillis();
+        builder.build();
+        builder.write(args[1]);
+        System.out.printf("Wrote %d positions to %s in %d msec.%n",
+                          builder.size(), args[1],
+                          System.currentTimeMillis() - start);
+    }
+
+    /** Number of plies covered by the book. */
+    private final int _plies;
+    /** Search time per position, in milliseconds. */
+    private final long _moveTime;
+    /** The threads that run my searches. */
+    private final ForkJoinPool _pool;
+    /** Table shared by all searches. */
+    private final TranspositionTable _table;
+    /** The search belonging to each of my threads. */
+    private final ThreadLocal<Searcher> _searchers;
+    /** The moves chosen so far, by position key. */
+    private final ConcurrentHashMap<Long, Long> _book =
+        new ConcurrentHashMap<>();
+}
@@ -0,0 +1,39 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the OpeningBook and OpeningBookBuilder classes.
+ *  @author Lily Vittayarukskul
+ */
+public class OpeningBookTest {
+
+    @Test
+    public void testBook() throws IOException {
+        File file = File.createTempFile("qirkat", ".book");
+        file.deleteOnExit();
+        OpeningBookBuilder builder = new OpeningBookBuilder(3, 10, 2);
+        builder.build();
+        builder.write(file.getPath());
+        OpeningBook book = new OpeningBook(file);
+        assertEquals(builder.size(), book.size());
+        assertTrue(book.size() > 1);
+        Board b = new Board();
+        long move = book.move(b);
+        assertTrue(b.legalMove(move));
+        b.makeMove(move);
+        MoveList replies = b.legalMoves();
+        for (int i = 0; i < replies.size(); i += 1) {
+            Board b1 = new Board(b);
+            b1.makeMove(replies.get(i));
+            if (b1.legalMoves().size() > 1) {
+                assertTrue(b1.legalMove(book.move(b1)));
+            }
+        }
+        b.setPieces("----- ----- --w-- --b-- -----", PieceColor.WHITE);
+        assertEquals(MoveCode.NONE, book.move(b));
+    }
+}
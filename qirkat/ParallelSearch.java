@@ -0,0 +1,303 @@
+package qirkat;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static qirkat.Searcher.*;
+
+/** A parallel alpha-beta search that splits the work of searching each
+ *  node among several threads, following the "Young Brothers Wait" rule:
+ *  the first (eldest) child of a node is searched first, by itself, and
+ *  only then are its younger brothers searched in parallel, as tasks in
+ *  a ForkJoinPool from which idle threads steal work.  A brother that
+ *  causes a cutoff cancels the others still running.  Each task has its
+ *  own copy of its position, and nodes fewer than SPLIT_DEPTH plies from
+ *  the horizon are searched serially by a Searcher belonging to the
+ *  thread.  All threads share one TranspositionTable.
+ *
+ *  Each split point counts the nodes in its subtree.  With one thread the
+ *  counts are reproducible, and the same search with more threads shows
+ *  how much extra work parallelism costs at each split point.
+ *  @author Lily Vittayarukskul
+ */
+class ParallelSearch {
+
+    /** Least number of plies remaining at a node below the root for it
+     *  to be a split point. */
+    static final int SPLIT_DEPTH = 4;
+
+    /** A search using THREADS threads that uses and updates TABLE, that
+     *  takes the values of the positions it holds from TABLEBASE (if not
+     *  null), and that values other positions at its horizon with
+     *  EVALUATOR. */
+    ParallelSearch(TranspositionTable table, Tablebase tablebase,
+                   Evaluator evaluator, int threads) {
+        _table = table;
+        _pool = new ForkJoinPool(threads);
+        _searchers = ThreadLocal.withInitial(
+            () -> new Searcher(_table, tablebase, evaluator, () -> false));
+    }
+
+    /** Return the best move from the position on BOARD, which has at
+     *  least one legal move and belongs to this search while it runs.
+     *  Searches to depth FIRSTDEPTH, FIRSTDEPTH + 1, ... in turn, until
+     *  the time budget of MOVETIME milliseconds or the budget of NODELIMIT
+     *  nodes (if positive) runs out or another iteration would probably
+     *  not finish within it, and returns the move found by the last
+     *  iteration that completed.  The first iteration always completes,
+     *  unless FIRSTDEPTH > 1, in which case, as for Searcher.search, it
+     *  too is held to the budget, and if it does not finish, the move
+     *  returned is the one the table holds for the root, if legal.
+     */
+    long search(Board board, int firstDepth, long moveTime,
+                long nodeLimit) {
+        long start = System.currentTimeMillis();
+        long best = board.legalMoves().get(0);
+        if (firstDepth > 1) {
+            long known = _table.move(TranspositionTable.key(board));
+            if (board.legalMove(known)) {
+                best = known;
+            }
+        }
+        _nodeLimit = nodeLimit;
+        _nodes.set(0);
+        _splits.set(0);
+        for (int depth = firstDepth; depth <= MAX_DEPTH; depth += 1) {
+            _stop = false;
+            _budgeted = depth > firstDepth || firstDepth > 1;
+            Split root = new Split(null, new Board(board), depth, 0,
+                                   -INFTY, INFTY);
+            ForkJoinTask<Integer> task = _pool.submit(root);
+            int value;
+            try {
+                if (!_budgeted) {
+                    value = task.get();
+                } else {
+                    long left = moveTime - (System.currentTimeMillis() - start);
+                    value = task.get(Math.max(1, left), TimeUnit.MILLISECONDS);
+                }
+            } catch (TimeoutException excp) {
+                _stop = true;
+                task.quietlyJoin();
+                break;
+            } catch (InterruptedException excp) {
+                _stop = true;
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException excp) {
+                throw new IllegalStateException(excp.getCause());
+            }
+            if (root._aborted) {
+                break;
+            }
+            best = root._best;
+            if (Math.abs(value) >= WIN_THRESHOLD
+                || 2 * (System.currentTimeMillis() - start) >= moveTime
+                || (nodeLimit > 0 && 2 * _nodes.get() >= nodeLimit)) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /** Return the number of nodes visited by the last search. */
+    long nodes() {
+        return _nodes.get();
+    }
+
+    /** Return the number of split points in the last search. */
+    long splits() {
+        return _splits.get();
+    }
+
+    /** Release my threads, after which I may not search again. */
+    void shutdown() {
+        _pool.shutdown();
+    }
+
+    /** Return true iff the current iteration should be abandoned because
+     *  the budget has run out. */
+    private boolean stopping() {
+        return _stop
+            || (_budgeted && _nodeLimit > 0 && _nodes.get() >= _nodeLimit);
+    }
+
+    /** The task of searching one node.  Its value is that of the node to
+     *  the player to move, as for Searcher. */
+    private class Split extends RecursiveTask<Integer> {
+
+        /** A task searching BOARD, PLY plies from the root, to DEPTH
+         *  within ALPHA..BETA, as a child of PARENT (null at the root). */
+        Split(Split parent, Board board, int depth, int ply,
+              int alpha, int beta) {
+            _parent = parent;
+            _board = board;
+            _depth = depth;
+            _ply = ply;
+            _alpha = alpha;
+            _beta = beta;
+        }
+
+        @Override
+        protected Integer compute() {
+            Searcher searcher = _searchers.get();
+            if (_ply > 0 && (_depth < SPLIT_DEPTH || _board.gameOver())) {
+                int value = searcher.searchSubtree(_board, _depth, _ply,
+                                                   _alpha, _beta,
+                                                   this::cancelled);
+                _nodes = searcher.nodes();
+                ParallelSearch.this._nodes.addAndGet(_nodes);
+                _aborted = searcher.stopped();
+                return value;
+            }
+            ParallelSearch.this._nodes.incrementAndGet();
+            _nodes = 1;
+            if (_ply > 0) {
+                if (searcher.inTablebase(_board)) {
+                    return searcher.tablebaseValue(_board);
+                }
+                int known = searcher.tableValue(TranspositionTable.key(_board),
+                                                _depth, _ply, _alpha, _beta);
+                if (known != UNKNOWN) {
+                    return known;
+                }
+            }
+            _splits.incrementAndGet();
+            MoveList moves = new MoveList();
+            searcher.orderedMoves(_board, _ply, moves);
+            if (moves.isEmpty()) {
+                return -(WINNING_VALUE - _ply);
+            }
+            int alpha = _alpha, bestValue = -INFTY;
+            Split eldest = child(moves.get(0), -_beta, -alpha);
+            int value = -eldest.compute();
+            _nodes += eldest._nodes;
+            if (eldest._aborted) {
+                _aborted = true;
+                return 0;
+            }
+            bestValue = value;
+            _best = moves.get(0);
+            alpha = Math.max(alpha, value);
+            if (value < _beta) {
+                bestValue = searchYoungerBrothers(moves, alpha, bestValue);
+                if (_aborted) {
+                    return 0;
+                }
+            }
+            searcher.record(TranspositionTable.key(_board), _depth, _ply,
+                            _alpha, _beta, bestValue, _best);
+            return bestValue;
+        }
+
+        /** Search all but the first of MOVES in parallel with null windows
+         *  at ALPHA, re-searching (in this thread) those that turn out
+         *  better, and return the best value found, which is at least
+         *  BESTVALUE, updating _best.  Stops the remaining searches once a
+         *  move reaches _beta. */
+        private int searchYoungerBrothers(MoveList moves, int alpha,
+                                          int bestValue) {
+            Split[] brothers = new Split[moves.size() - 1];
+            for (int i = 0; i < brothers.length; i += 1) {
+                brothers[i] = child(moves.get(i + 1), -alpha - 1, -alpha);
+            }
+            for (int i = brothers.length - 1; i >= 0; i -= 1) {
+                brothers[i].fork();
+            }
+            for (int i = 0; i < brothers.length; i += 1) {
+                Split brother = brothers[i];
+                int value = -brother.join();
+                _nodes += brother._nodes;
+                if (_cutoff) {
+                    continue;
+                } else if (brother._aborted) {
+                    _aborted = true;
+                    continue;
+                }
+                if (value > alpha && value < _beta && !_aborted) {
+                    brother = child(moves.get(i + 1), -_beta, -alpha);
+                    value = -brother.compute();
+                    _nodes += brother._nodes;
+                    if (brother._aborted) {
+                        _aborted = true;
+                        continue;
+                    }
+                }
+                if (value > bestValue) {
+                    bestValue = value;
+                    _best = moves.get(i + 1);
+                    if (value > alpha) {
+                        alpha = value;
+                        if (value >= _beta) {
+                            _cutoff = true;
+                        }
+                    }
+                }
+            }
+            return bestValue;
+        }
+
+        /** Return the task for searching the position after MOVE, with
+         *  window ALPHA..BETA. */
+        private Split child(long move, int alpha, int beta) {
+            Board board = new Board(_board);
+            board.makeMove(move);
+            return new Split(this, board, _depth - 1, _ply + 1, alpha, beta);
+        }
+
+        /** Return true iff my search should be abandoned: because the
+         *  budget has run out, or because some brother of mine or of one
+         *  of my ancestors has caused a cutoff. */
+        private boolean cancelled() {
+            if (stopping()) {
+                return true;
+            }
+            for (Split s = _parent; s != null; s = s._parent) {
+                if (s._cutoff) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** The task that created me, or null. */
+        private final Split _parent;
+        /** The position I search, which belongs to me. */
+        private final Board _board;
+        /** Depth to search, ply from the root, and window. */
+        private final int _depth, _ply, _alpha, _beta;
+        /** Set when one of my children causes a cutoff. */
+        private volatile boolean _cutoff;
+        /** True iff my search was abandoned, so my value is
+         *  meaningless. */
+        private boolean _aborted;
+        /** The best move found. */
+        private long _best;
+        /** The number of nodes in my subtree. */
+        private long _nodes;
+    }
+
+    /** The table shared by all threads. */
+    private final TranspositionTable _table;
+    /** The threads that run my tasks. */
+    private final ForkJoinPool _pool;
+    /** The serial search belonging to each of my threads. */
+    private final ThreadLocal<Searcher> _searchers;
+    /** Set to abandon the current iteration. */
+    private volatile boolean _stop;
+    /** True iff the current iteration may be abandoned when the node
+     *  budget runs out (i.e., it is not the first, or the search started
+     *  deeper than one ply). */
+    private volatile boolean _budgeted;
+    /** Node budget for the current search, or 0 if unlimited. */
+    private long _nodeLimit;
+    /** Number of nodes visited by the current search. */
+    private final AtomicLong _nodes = new AtomicLong();
+    /** Number of split points in the current search. */
+    private final AtomicLong _splits = new AtomicLong();
+}
@@ -0,0 +1,71 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of the ParallelSearch class.
+ *  @author Lily Vittayarukskul
+ */
+public class ParallelSearchTest {
+
+    @Test
+    public void testReproducible() {
+        long[] nodes = new long[2];
+        for (int i = 0; i < nodes.length; i += 1) {
+            ParallelSearch search =
+                new ParallelSearch(new TranspositionTable(1), null,
+                                   new Evaluator(), 1);
+            Board b = new Board();
+            long move = search.search(b, 1, Long.MAX_VALUE, 20000);
+            assertTrue(b.legalMove(move));
+            assertTrue(search.splits() > 0);
+            nodes[i] = search.nodes();
+        }
+        assertEquals(nodes[0], nodes[1]);
+    }
+
+    @Test
+    public void testThreads() {
+        ParallelSearch search =
+            new ParallelSearch(new TranspositionTable(1), null,
+                               new Evaluator(), 4);
+        Board b = new Board();
+        b.setPieces("----- -w--- -bbb- ----- -----", PieceColor.WHITE);
+        long move = search.search(b, 1, Long.MAX_VALUE, 20000);
+        assertTrue(b.legalMove(move));
+        assertEquals(3, MoveCode.legs(move));
+    }
+
+    @Test
+    public void testDeepStart() {
+        TranspositionTable table = new TranspositionTable(1);
+        Board b = new Board();
+        long start = System.currentTimeMillis();
+        long move = new Searcher(table, null, new Evaluator(), () -> false)
+            .search(new Board(b), b.legalMoves(), 40, 100, 0);
+        assertTrue(b.legalMove(move));
+        move = new ParallelSearch(table, null, new Evaluator(), 2)
+            .search(b, 40, 100, 0);
+        assertTrue(b.legalMove(move));
+        assertTrue(System.currentTimeMillis() - start < 5000);
+    }
+
+    @Test
+    public void testTablebase() throws IOException {
+        File file = File.createTempFile("qirkat", ".tb");
+        file.deleteOnExit();
+        TablebaseBuilder builder = new TablebaseBuilder(3, 1);
+        builder.build(file.getPath());
+        ParallelSearch search =
+            new ParallelSearch(new TranspositionTable(1),
+                               new Tablebase(file), new Evaluator(), 1);
+        Board b = new Board();
+        b.setPieces("----- -w--- ----- --b-- -w---", PieceColor.WHITE);
+        long move = search.search(b, 1, Long.MAX_VALUE, 1000000);
+        assertEquals(MoveCode.parse("b2-c2"), move);
+        assertTrue(search.splits() <= Searcher.MAX_DEPTH);
+    }
+}
@@ -31,6 +31,11 @@ abstract class Player {
      *  board.whoseMove() == myColor and that !board.gameOver(). */
     abstract Move myMove();
 
+    /** Stop anything I am doing in the background, since the game I am
+     *  playing is over (or abandoned). */
+    void endGame() {
+    }
+
     /** The game I am playing in. */
     private final Game _game;
     /** The color of my pieces. */
@@ -0,0 +1,606 @@
+package qirkat;
+
+import java.util.function.BooleanSupplier;
+
+/** The game-tree search used by an AI: an iterative-deepening principal
+ *  variation search with a transposition table, move ordering, capture
+ *  quiescence, and null-move and late-move pruning.  A Searcher holds all
+ *  the state of one search, and is used by one thread at a time.  Several
+ *  Searchers may search at once using the same TranspositionTable, which
+ *  is how an AI uses several threads.  A ParallelSearch also uses
+ *  Searchers to search the subtrees below its split points.
+ *  @author Lily Vittayarukskul
+ */
+class Searcher {
+
+    /** Maximum depth of an iterative search. */
+    static final int MAX_DEPTH = 64;
+    /** Maximum number of plies from the root to any node searched,
+     *  including the captures searched beyond MAX_DEPTH, of which there
+     *  can be no more than there are pieces. */
+    private static final int MAX_PLY = MAX_DEPTH + Move.SIDE * Move.SIDE;
+    /** Number of nodes searched between checks of the time and node
+     *  budgets (a power of two). */
+    private static final int CHECK_INTERVAL = 1024;
+    /** A position magnitude indicating a win for the player to move (if
+     *  positive) or a loss (if negative), in a position where the game is
+     *  over.  A win or loss PLY plies away from the root has magnitude
+     *  WINNING_VALUE - PLY, so that quicker wins are preferred. */
+    static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
+    /** Values of at least this magnitude indicate a win or loss. */
+    static final int WIN_THRESHOLD = WINNING_VALUE - MAX_PLY - 1;
+    /** A magnitude greater than a normal value. */
+    static final int INFTY = Integer.MAX_VALUE;
+    /** Returned by tableValue when the table does not settle a value. */
+    static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /** Half the width of the first window searched around the value found
+     *  by the previous iteration. */
+    private static final int ASPIRATION_WINDOW = 2 * Evaluator.PIECE_VALUE;
+
+    /* Selective search.  A null move (a pass) is tried at nodes searched
+     * with a null window, at least NULL_MOVE_MIN_DEPTH plies from the
+     * horizon, whose static value is already at least beta, and whose
+     * player to move has no capture (which would be forced) and at least
+     * NULL_MOVE_MIN_PIECES pieces (with fewer, being forced to move is
+     * often a disadvantage, and passing would misjudge the position).
+     * It is searched NULL_MOVE_REDUCTION plies less deeply than a real
+     * move.  Quiet moves after the first LMR_MIN_MOVES at a node at least
+     * LMR_MIN_DEPTH plies from the horizon are searched one ply less
+     * deeply (two after the first LMR_DEEP_MOVES), and searched again at
+     * full depth if they turn out better than expected. */
+
+    /** Reduction of the depth of a null-move search, in plies. */
+    private static final int NULL_MOVE_REDUCTION = 2;
+    /** Least remaining depth at which to try a null move. */
+    private static final int NULL_MOVE_MIN_DEPTH = 3;
+    /** Least number of pieces the player to move must have to try a null
+     *  move. */
+    private static final int NULL_MOVE_MIN_PIECES = 4;
+    /** Number of moves at a node searched before any are reduced. */
+    private static final int LMR_MIN_MOVES = 3;
+    /** Number of moves at a node searched before they are reduced by two
+     *  plies. */
+    private static final int LMR_DEEP_MOVES = 8;
+    /** Least remaining depth at which to reduce moves. */
+    private static final int LMR_MIN_DEPTH = 3;
+
+    /** Magnitude of the value of a position that the tablebase shows to
+     *  be won or lost at once.  Values of positions won or lost later are
+     *  one nearer zero for each ply until the end.  They do not depend on
+     *  the ply of the position, so they may be stored as they are. */
+    private static final int TABLEBASE_WIN = WIN_THRESHOLD - 1;
+
+    /** A Searcher that uses and updates TABLE, that takes the values of
+     *  the positions it holds from TABLEBASE (if not null), that values
+     *  other positions at its horizon with EVALUATOR, and that abandons
+     *  any search in progress once STOP returns true. */
+    Searcher(TranspositionTable table, Tablebase tablebase,
+             Evaluator evaluator, BooleanSupplier stop) {
+        _table = table;
+        _tablebase = tablebase;
+        _evaluator = evaluator;
+        _stop = stop;
+    }
+
+    /** Return the best move from the position on BOARD, whose legal
+     *  moves are ROOTMOVES (at least one).  BOARD is used, and ROOTMOVES
+     *  copied, by this Searcher alone.  Searches to depth FIRSTDEPTH,
+     *  FIRSTDEPTH + 1, ... in turn, until the time budget of MOVETIME
+     *  milliseconds or the budget of NODELIMIT nodes (if positive) runs
+     *  out, another iteration would probably not finish within it, or STOP
+     *  is set, and returns the move found by the last iteration that
+     *  completed.  The first iteration always completes unless STOP is
+     *  set or FIRSTDEPTH > 1.  A later first depth (as after a ponder hit)
+     *  means that the table already holds the results of shallower
+     *  searches, so the first iteration too is held to the budget, and if
+     *  it does not finish, the move returned is the one the table holds
+     *  for the root, if legal.  After the first, each iteration starts
+     *  with a narrow window around the previous value, widening it if the
+     *  value falls outside. */
+    long search(Board board, MoveList rootMoves, int firstDepth,
+                long moveTime, long nodeLimit) {
+        _rootMoves.clear();
+        _rootMoves.addAll(rootMoves);
+        useSquareValues(board);
+        long best = rootMoves.get(0);
+        if (firstDepth > 1) {
+            long known = _table.move(TranspositionTable.key(board));
+            if (rootMoves.contains(known)) {
+                best = known;
+            }
+        }
+        _lastFoundMove = best;
+        _principalVariation.clear();
+        _completedDepth = 0;
+        _ordering.newSearch();
+        _moveTime = moveTime;
+        _nodeLimit = nodeLimit;
+        _firstDepth = firstDepth;
+        _startTime = System.currentTimeMillis();
+        _nodes = 0;
+        _stopped = false;
+        int value = 0;
+        for (int depth = firstDepth; depth <= MAX_DEPTH; depth += 1) {
+            _rootDepth = depth;
+            int alpha = -INFTY, beta = INFTY;
+            if (depth > firstDepth) {
+                alpha = Math.max(-INFTY, value - ASPIRATION_WINDOW);
+                beta = Math.min(INFTY, value + ASPIRATION_WINDOW);
+            }
+            while (true) {
+                value = findMove(board, depth, 0, alpha, beta);
+                if (_stopped) {
+                    break;
+                } else if (value <= alpha) {
+                    alpha = -INFTY;
+                } else if (value >= beta) {
+                    best = _lastFoundMove;
+                    beta = INFTY;
+                } else {
+                    break;
+                }
+            }
+            if (_stopped) {
+                break;
+            }
+            best = _lastFoundMove;
+            _completedDepth = depth;
+            _principalVariation.clear();
+            for (int i = 0; i < _pvLength[0]; i += 1) {
+                _principalVariation.add(_pv[0][i]);
+            }
+            if (Math.abs(value) >= WIN_THRESHOLD
+                || 2 * elapsed() >= _moveTime
+                || (_nodeLimit > 0 && 2 * _nodes >= _nodeLimit)) {
+                break;
+            }
+        }
+        _lastFoundMove = best;
+        return best;
+    }
+
+    /** Return the principal variation found by the last completed
+     *  iteration of the last search: the line of play it expects from the
+     *  root. */
+    MoveList principalVariation() {
+        return _principalVariation;
+    }
+
+    /** Have BOARD keep the square sums of my evaluator's piece-square
+     *  values (see Evaluator.evaluate), if it does not already. */
+    private void useSquareValues(Board board) {
+        if (board.squareValues() != _evaluator.squareValues()) {
+            board.setSquareValues(_evaluator.squareValues());
+        }
+    }
+
+    /** Return the time in milliseconds since the current search
+     *  started. */
+    private long elapsed() {
+        return System.currentTimeMillis() - _startTime;
+    }
+
+    /** Return the value of BOARD, which is PLY > 0 plies from the root
+     *  of some larger search, to the player to move, searching it to
+     *  DEPTH within the window ALPHA..BETA as a node of search() would be
+     *  searched.  There is no budget, but the search is abandoned once
+     *  STOP returns true, after which stopped() is true and the value is
+     *  meaningless.  Used by ParallelSearch for the subtrees below its
+     *  split points. */
+    int searchSubtree(Board board, int depth, int ply, int alpha, int beta,
+                      BooleanSupplier stop) {
+        assert ply > 0;
+        BooleanSupplier stop0 = _stop;
+        _stop = stop;
+        _rootDepth = _firstDepth = 0;
+        _nodes = 0;
+        _stopped = false;
+        _onPV[ply] = _afterNull[ply] = false;
+        useSquareValues(board);
+        try {
+            return findMove(board, depth, ply, alpha, beta);
+        } finally {
+            _stop = stop0;
+        }
+    }
+
+    /** Set MOVES to the legal moves from BOARD, which is PLY plies from
+     *  the root of some larger search, in the order in which this Searcher
+     *  would search them, apart from any principal variation. */
+    void orderedMoves(Board board, int ply, MoveList moves) {
+        moves.clear();
+        board.getMoves(moves);
+        _ordering.order(moves, _table.move(TranspositionTable.key(board)),
+                        ply, board.whoseMove());
+    }
+
+    /** Return the depth of the last iteration that the current or last
+     *  call to search completed, or 0 if none. */
+    int completedDepth() {
+        return _completedDepth;
+    }
+
+    /** Return true iff the last search was abandoned before it
+     *  finished. */
+    boolean stopped() {
+        return _stopped;
+    }
+
+    /** Return the number of nodes visited by the current or last
+     *  search. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Count a node searched, and set _stopped if _stop is set, or if the
+     *  current iteration is not the first (or the search started deeper
+     *  than one ply) and the search has used up its time or node
+     *  budget. */
+    private void countNode() {
+        _nodes += 1;
+        if (_stop.getAsBoolean()) {
+            _stopped = true;
+        } else if ((_nodes & (CHECK_INTERVAL - 1)) == 0
+                   && (_rootDepth > _firstDepth || _firstDepth > 1)
+                   && (elapsed() >= _moveTime
+                       || (_nodeLimit > 0 && _nodes >= _nodeLimit))) {
+            _stopped = true;
+        }
+    }
+
+    /** The code (see MoveCode) of the best move found at the root by the
+     *  last call to one of the ...FindMove methods below. */
+    private long _lastFoundMove;
+
+    /** Returns true when the current search should stop. */
+    private BooleanSupplier _stop;
+    /** Time budget for the current search, in milliseconds. */
+    private long _moveTime;
+    /** Node budget for the current search, or 0 if unlimited. */
+    private long _nodeLimit;
+    /** Depth of the first iteration of the current search. */
+    private int _firstDepth;
+    /** The legal moves at the root of the current search. */
+    private final MoveList _rootMoves = new MoveList();
+    /** Value of System.currentTimeMillis() when the current search
+     *  started. */
+    private long _startTime;
+    /** Number of nodes visited by the current search. */
+    private long _nodes;
+    /** Depth of the current iteration. */
+    private int _rootDepth;
+    /** Depth of the last iteration completed by the current search. */
+    private int _completedDepth;
+    /** True iff the current iteration has been abandoned because the
+     *  budget ran out.  Its results are then meaningless. */
+    private boolean _stopped;
+
+    /** Results of searching positions, possibly shared with other
+     *  Searchers. */
+    private final TranspositionTable _table;
+    /** Exact values of positions with few pieces, or null. */
+    private final Tablebase _tablebase;
+    /** Values positions at the horizon. */
+    private final Evaluator _evaluator;
+
+    /** Orders the moves at each node for searching. */
+    private final MoveOrdering _ordering = new MoveOrdering(MAX_PLY);
+
+    /** Buffers for the moves generated at each ply of the search. */
+    private final MoveList[] _moves = new MoveList[MAX_PLY + 1];
+
+    {
+        for (int i = 0; i < _moves.length; i += 1) {
+            _moves[i] = new MoveList();
+        }
+    }
+
+    /** The principal variations found by the current iteration:
+     *  _pv[ply][ply .. _pvLength[ply] - 1] is the best line found from the
+     *  node being searched at ply. */
+    private final long[][] _pv = new long[MAX_PLY + 2][MAX_PLY + 2];
+    /** The lengths of the lines in _pv. */
+    private final int[] _pvLength = new int[MAX_PLY + 2];
+    /** The principal variation of the last completed iteration. */
+    private final MoveList _principalVariation = new MoveList();
+    /** _onPV[ply] is true iff the moves being searched at plies 0 .. ply
+     *  - 1 are the start of the principal variation of the previous
+     *  iteration. */
+    private final boolean[] _onPV = new boolean[MAX_PLY + 2];
+    /** _afterNull[ply] is true iff the node being searched at ply was
+     *  reached by a null move. */
+    private final boolean[] _afterNull = new boolean[MAX_PLY + 2];
+
+    /** Search position BOARD, which is PLY plies from the root, to DEPTH
+     *  plies, and return its value to the player to move (in the
+     *  sense of staticScore).  The value is exact if it lies strictly
+     *  between ALPHA and BETA; otherwise it is an upper bound (if at most
+     *  ALPHA) or a lower bound (if at least BETA).  The first move at each
+     *  node is searched with the full window, and the rest with null
+     *  windows, re-searching any that turn out better; late quiet moves
+     *  are searched less deeply, and null moves may cut the search short
+     *  (see NULL_MOVE_REDUCTION and LMR_MIN_MOVES).  At the root,
+     *  records the best move in _lastFoundMove; below it, uses and updates
+     *  the transposition table.  Records the best line in _pv[PLY].
+     *  Returns 0 at once once _stopped. */
+    private int findMove(Board board, int depth, int ply,
+                         int alpha, int beta) {
+        countNode();
+        _pvLength[ply] = ply;
+        if (_stopped) {
+            return 0;
+        }
+        boolean root = ply == 0;
+        if (board.gameOver()) {
+            return staticScore(board, ply);
+        } else if (!root && inTablebase(board)) {
+            return tablebaseValue(board);
+        } else if (depth == 0) {
+            return quiescence(board, ply, alpha, beta);
+        }
+        if (root) {
+            _onPV[0] = true;
+        }
+        long key = TranspositionTable.key(board);
+        if (!root) {
+            int known = tableValue(key, depth, ply, alpha, beta);
+            if (known != UNKNOWN) {
+                return known;
+            }
+        }
+        MoveList moves = moves(board, key, ply);
+        if (moves.isEmpty()) {
+            return -(WINNING_VALUE - ply);
+        }
+        if (tryNullMove(board, depth, ply, alpha, beta, moves)) {
+            board.makeNullMove();
+            _afterNull[ply + 1] = true;
+            _onPV[ply + 1] = false;
+            int value =
+                -findMove(board, Math.max(0, depth - 1 - NULL_MOVE_REDUCTION),
+                          ply + 1, -beta, -beta + 1);
+            board.unmakeMove();
+            if (_stopped) {
+                return 0;
+            }
+            if (value >= beta) {
+                return value >= WIN_THRESHOLD ? beta : value;
+            }
+        }
+        int alpha0 = alpha, bestValue = -INFTY;
+        long best = MoveCode.NONE;
+        for (int i = 0; i < moves.size(); i += 1) {
+            long move = moves.get(i);
+            _onPV[ply + 1] = _onPV[ply] && ply < _principalVariation.size()
+                && move == _principalVariation.get(ply);
+            _afterNull[ply + 1] = false;
+            board.makeMove(move);
+            int value;
+            if (i == 0) {
+                value = -findMove(board, depth - 1, ply + 1, -beta, -alpha);
+            } else {
+                int reduction = reduction(depth, i, move);
+                value = -findMove(board, depth - 1 - reduction, ply + 1,
+                                  -alpha - 1, -alpha);
+                if (value > alpha && reduction > 0) {
+                    value = -findMove(board, depth - 1, ply + 1,
+                                      -alpha - 1, -alpha);
+                }
+                if (value > alpha && value < beta) {
+                    value = -findMove(board, depth - 1, ply + 1,
+                                      -beta, -alpha);
+                }
+            }
+            board.unmakeMove();
+            if (_stopped) {
+                return 0;
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                best = move;
+                if (value > alpha) {
+                    alpha = value;
+                    savePV(ply, move);
+                    if (value >= beta) {
+                        _ordering.cutoff(move, depth, ply,
+                                         board.whoseMove());
+                        break;
+                    }
+                }
+            }
+        }
+        if (root) {
+            _lastFoundMove = best;
+        }
+        record(key, depth, ply, alpha0, beta, bestValue, best);
+        return bestValue;
+    }
+
+    /** Return true iff a null move should be tried at BOARD, which is PLY
+     *  plies from the root and is to be searched to DEPTH within the
+     *  window ALPHA..BETA, and whose legal moves are MOVES (not empty). */
+    private boolean tryNullMove(Board board, int depth, int ply,
+                                int alpha, int beta, MoveList moves) {
+        return ply > 0 && !_afterNull[ply] && beta - alpha == 1
+            && depth >= NULL_MOVE_MIN_DEPTH && Math.abs(beta) < WIN_THRESHOLD
+            && !MoveCode.isJump(moves.get(0))
+            && board.pieceCount(board.whoseMove()) >= NULL_MOVE_MIN_PIECES
+            && staticScore(board, ply) >= beta;
+    }
+
+    /** Return the number of plies by which to reduce the search of MOVE,
+     *  the Ith move tried at a node to be searched to DEPTH. */
+    private static int reduction(int depth, int i, long move) {
+        if (i < LMR_MIN_MOVES || depth < LMR_MIN_DEPTH
+            || MoveCode.isJump(move)) {
+            return 0;
+        } else if (i < LMR_DEEP_MOVES || depth <= LMR_MIN_DEPTH) {
+            return 1;
+        }
+        return 2;
+    }
+
+    /** Return the value of BOARD, which is PLY plies from the root, to
+     *  the player to move, searching only captures, within the window
+     *  ALPHA..BETA as for findMove.  Captures are mandatory, so a player
+     *  that can capture must, and a position is judged by staticScore only
+     *  once no capture is possible.  Returns 0 at once once _stopped. */
+    private int quiescence(Board board, int ply, int alpha, int beta) {
+        countNode();
+        _pvLength[ply] = ply;
+        if (_stopped) {
+            return 0;
+        } else if (inTablebase(board)) {
+            return tablebaseValue(board);
+        }
+        MoveList moves = _moves[ply];
+        moves.clear();
+        board.getCaptures(moves);
+        if (moves.isEmpty() || ply >= MAX_PLY) {
+            return staticScore(board, ply);
+        }
+        _ordering.order(moves, MoveCode.NONE, ply, board.whoseMove());
+        int bestValue = -INFTY;
+        for (int i = 0; i < moves.size(); i += 1) {
+            long move = moves.get(i);
+            board.makeMove(move);
+            int value = -quiescence(board, ply + 1, -beta, -alpha);
+            board.unmakeMove();
+            if (_stopped) {
+                return 0;
+            }
+            if (value > bestValue) {
+                bestValue = value;
+                if (value > alpha) {
+                    alpha = value;
+                    savePV(ply, move);
+                    if (value >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestValue;
+    }
+
+    /** Make MOVE followed by the best line from PLY + 1 the best line
+     *  from PLY. */
+    private void savePV(int ply, long move) {
+        _pv[ply][ply] = move;
+        for (int i = ply + 1; i < _pvLength[ply + 1]; i += 1) {
+            _pv[ply][i] = _pv[ply + 1][i];
+        }
+        _pvLength[ply] = Math.max(ply + 1, _pvLength[ply + 1]);
+    }
+
+    /** Record in the transposition table that the position with key KEY,
+     *  PLY plies from the root and searched to DEPTH within the window
+     *  ALPHA..BETA, has value VALUE, with BEST the best move found. */
+    void record(long key, int depth, int ply, int alpha, int beta,
+                int value, long best) {
+        int bound;
+        if (value <= alpha) {
+            bound = TranspositionTable.UPPER;
+        } else if (value >= beta) {
+            bound = TranspositionTable.LOWER;
+        } else {
+            bound = TranspositionTable.EXACT;
+        }
+        _table.store(key, depth, bound, toTable(value, ply), best);
+    }
+
+    /** Return VALUE, found PLY plies from the root, in the form stored in
+     *  the transposition table, where wins and losses are counted from
+     *  the position itself rather than from the root. */
+    private static int toTable(int value, int ply) {
+        if (value >= WIN_THRESHOLD) {
+            return value + ply;
+        } else if (value <= -WIN_THRESHOLD) {
+            return value - ply;
+        }
+        return value;
+    }
+
+    /** Return the transposition-table value VALUE as a value PLY plies
+     *  from the root: the inverse of toTable. */
+    private static int fromTable(int value, int ply) {
+        if (value >= WIN_THRESHOLD) {
+            return value - ply;
+        } else if (value <= -WIN_THRESHOLD) {
+            return value + ply;
+        }
+        return value;
+    }
+
+    /** Return the buffer for PLY filled with the legal moves from
+     *  BOARD, whose transposition-table key is KEY, in the order in which
+     *  they should be searched.  At the root, these are the moves given to
+     *  search.  Along the principal variation of the previous
+     *  iteration, its move comes first, and elsewhere, the move from the
+     *  transposition table. */
+    private MoveList moves(Board board, long key, int ply) {
+        MoveList moves = _moves[ply];
+        moves.clear();
+        long hashMove = _table.move(key);
+        if (ply == 0) {
+            moves.addAll(_rootMoves);
+        } else {
+            board.getMoves(moves);
+        }
+        if (_onPV[ply] && ply < _principalVariation.size()) {
+            hashMove = _principalVariation.get(ply);
+        }
+        _ordering.order(moves, hashMove, ply, board.whoseMove());
+        return moves;
+    }
+
+    /** Return the value of the position with key KEY, PLY > 0 plies from
+     *  the root, searched to DEPTH within the window ALPHA..BETA, if the
+     *  transposition table holds an entry at least that deep whose bound
+     *  settles it, and otherwise UNKNOWN. */
+    int tableValue(long key, int depth, int ply, int alpha, int beta) {
+        long entry = _table.probe(key);
+        if (entry == 0 || TranspositionTable.depth(entry) < depth) {
+            return UNKNOWN;
+        }
+        int score = fromTable(TranspositionTable.score(entry), ply);
+        switch (TranspositionTable.bound(entry)) {
+        case TranspositionTable.EXACT:
+            return score;
+        case TranspositionTable.LOWER:
+            return score >= beta ? score : UNKNOWN;
+        default:
+            return score <= alpha ? score : UNKNOWN;
+        }
+    }
+
+    /** Return true iff I have a tablebase that holds the position on
+     *  BOARD. */
+    boolean inTablebase(Board board) {
+        return _tablebase != null && _tablebase.covers(board);
+    }
+
+    /** Return the value to the player to move of the position on BOARD,
+     *  which inTablebase(BOARD). */
+    int tablebaseValue(Board board) {
+        int entry = _tablebase.probe(board);
+        if (entry == Tablebase.DRAW) {
+            return 0;
+        }
+        int plies = entry - 1;
+        return plies % 2 == 0 ? -(TABLEBASE_WIN - plies)
+            : TABLEBASE_WIN - plies;
+    }
+
+    /** Return a heuristic value for BOARD, which is PLY plies from the
+     *  root, from the point of view of the player to move: positive
+     *  values favor that player.  A player with no pieces has lost. */
+    private int staticScore(Board board, int ply) {
+        PieceColor player = board.whoseMove();
+        if (board.gameOver() || board.pieces(player) == 0) {
+            return -(WINNING_VALUE - ply);
+        }
+        return _evaluator.evaluate(board);
+    }
+}
@@ -0,0 +1,302 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static qirkat.PieceColor.*;
+import static qirkat.ValidMoves.*;
+
+/** An endgame tablebase: the outcome with best play of every position
+ *  with at most maxPieces() pieces, and the number of plies until the
+ *  game ends.  The tables are built by TablebaseBuilder and kept in a
+ *  file, which is mapped into memory read-only, so that opening one costs
+ *  almost nothing and probes read only the pages they touch.
+ *
+ *  A position includes, besides its pieces and the player to move, the
+ *  last non-capturing sideways move of each player, which that player
+ *  may not immediately reverse.  Positions are grouped into classes by
+ *  the number of pieces of each color.  Within a class, a position's
+ *  index is computed from the ranks of its white and black pieces in the
+ *  combinatorial number system, the player to move, and the index among
+ *  that player's pieces of the piece (if any) whose move may not be
+ *  reversed, together with the direction of that move.
+ *
+ *  Each entry is a byte.  Entry 0 (DRAW) means that neither player can
+ *  force a win, so that with best play the game goes on forever (or that
+ *  the position cannot occur).  Any other entry E means that the game
+ *  ends E - 1 plies later: the player to move loses if E - 1 is even, and
+ *  otherwise wins.
+ *  @author Lily Vittayarukskul
+ */
+class Tablebase {
+
+    /** The entry for a drawn position. */
+    static final int DRAW = 0;
+
+    /** The largest entry. */
+    static final int MAX_ENTRY = 0xff;
+
+    /** The longest ending that an entry can record, in plies.  A class of
+     *  positions with a longer ending cannot be built. */
+    static final int MAX_PLIES = MAX_ENTRY - 1;
+
+    /** Number of codes for the irreversible move of a player with one
+     *  piece: none, or a move in either sideways direction. */
+    static final int CODES_PER_PIECE = 2;
+
+    /** The first value in a tablebase file. */
+    static final int MAGIC = 0x51544231;
+
+    /** Bytes in a file's header: MAGIC and maxPieces(). */
+    static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+    /** BINOMIAL[n][k] is the number of k-element subsets of n things. */
+    private static final int[][] BINOMIAL =
+        new int[NUM_INDICES + 1][NUM_INDICES + 1];
+
+    /** The largest number of entries in one class of positions: about the
+     *  largest array a JVM allows, which is also the limit of one mapped
+     *  buffer and of an int index. */
+    static final long MAX_CLASS_SIZE = Integer.MAX_VALUE - 8;
+
+    /** The largest number of pieces for which every class of positions has
+     *  at most MAX_CLASS_SIZE entries. */
+    static final int MAX_PIECES;
+
+    static {
+        for (int n = 0; n <= NUM_INDICES; n += 1) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= n; k += 1) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+        int pieces = 2;
+        while (fits(pieces + 1)) {
+            pieces += 1;
+        }
+        MAX_PIECES = pieces;
+    }
+
+    /** The tablebase in FILE, as written by TablebaseBuilder. */
+    Tablebase(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("not a tablebase");
+            }
+            _maxPieces = input.readInt();
+            if (_maxPieces < 2 || _maxPieces > MAX_PIECES) {
+                throw new IOException("bad tablebase header");
+            }
+            _entries = new ByteBuffer[_maxPieces][_maxPieces];
+            long offset = HEADER_BYTES;
+            for (int total = 2; total <= _maxPieces; total += 1) {
+                for (int w = 1; w < total; w += 1) {
+                    long size = size(w, total - w);
+                    if (offset + size > channel.size()) {
+                        throw new IOException("truncated tablebase");
+                    }
+                    _entries[w][total - w] =
+                        channel.map(FileChannel.MapMode.READ_ONLY,
+                                    offset, size);
+                    offset += size;
+                }
+            }
+        }
+    }
+
+    /** Return the largest number of pieces in my positions. */
+    int maxPieces() {
+        return _maxPieces;
+    }
+
+    /** Return true iff I hold the position on BOARD. */
+    boolean covers(Board board) {
+        return Integer.bitCount(board.pieces(WHITE) | board.pieces(BLACK))
+            <= _maxPieces;
+    }
+
+    /** Return my entry for the position on BOARD, which I cover.  A player
+     *  with no pieces has lost. */
+    int probe(Board board) {
+        int w = Integer.bitCount(board.pieces(WHITE)),
+            b = Integer.bitCount(board.pieces(BLACK));
+        if (board.pieces(board.whoseMove()) == 0) {
+            return 1;
+        } else if (w == 0 || b == 0) {
+            return DRAW;
+        }
+        return _entries[w][b].get(index(board)) & MAX_ENTRY;
+    }
+
+    /** Return the best move from the position on BOARD, which I cover and
+     *  in which there is a legal move: a quickest win, or failing that a
+     *  draw, or failing that a slowest loss. */
+    long bestMove(Board board) {
+        Board next = new Board(board);
+        long best = MoveCode.NONE;
+        int bestValue = Integer.MIN_VALUE;
+        MoveList moves = board.legalMoves();
+        for (int i = 0; i < moves.size(); i += 1) {
+            long mov = moves.get(i);
+            next.makeMove(mov);
+            int value = -value(probe(next));
+            next.unmakeMove();
+            if (value > bestValue) {
+                best = mov;
+                bestValue = value;
+            }
+        }
+        return best;
+    }
+
+    /** Return the worth of the entry ENTRY to the player to move, so that
+     *  larger is better: positive for wins, which are better the sooner
+     *  they come, 0 for draws, and negative for losses, which are better
+     *  the later they come. */
+    static int value(int entry) {
+        if (entry == DRAW) {
+            return 0;
+        }
+        int plies = entry - 1;
+        int worth = MAX_ENTRY + 1 - plies;
+        return plies % 2 == 0 ? -worth : worth;
+    }
+
+    /** Return the number of entries for positions with W white and B
+     *  black pieces. */
+    static long size(int w, int b) {
+        return (long) BINOMIAL[NUM_INDICES][w]
+            * BINOMIAL[NUM_INDICES - w][b] * 2
+            * codes(w) * codes(b);
+    }
+
+    /** Return true iff every class of positions with TOTAL pieces has at
+     *  most MAX_CLASS_SIZE entries. */
+    private static boolean fits(int total) {
+        if (total > NUM_INDICES) {
+            return false;
+        }
+        for (int w = 1; w < total; w += 1) {
+            if (size(w, total - w) > MAX_CLASS_SIZE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the number of codes (see index) for the irreversible move of
+     *  a player with N pieces. */
+    static int codes(int n) {
+        return 1 + CODES_PER_PIECE * n;
+    }
+
+    /** Return the index of the position on BOARD among the positions with
+     *  the same number of pieces of each color. */
+    static int index(Board board) {
+        int white = board.pieces(WHITE), black = board.pieces(BLACK);
+        return index(white, black, board.whoseMove(),
+                     code(white, board.lastMove(WHITE)),
+                     code(black, board.lastMove(BLACK)));
+    }
+
+    /** Return the index, among positions with the same number of pieces of
+     *  each color, of the position with white and black pieces on the
+     *  squares in the masks WHITE and BLACK, NEXTMOVE to move, and
+     *  irreversible moves with codes WHITECODE and BLACKCODE (see
+     *  code). */
+    static int index(int white, int black, PieceColor nextMove,
+                     int whiteCode, int blackCode) {
+        int w = Integer.bitCount(white), b = Integer.bitCount(black);
+        int position = rank(white) * BINOMIAL[NUM_INDICES - w][b]
+            + rank(compress(black, white));
+        int side = nextMove == WHITE ? 0 : 1;
+        return ((position * 2 + side) * codes(w) + whiteCode) * codes(b)
+            + blackCode;
+    }
+
+    /** Return the code for LAST, the last move of the player whose pieces
+     *  are on the squares in PIECES: 0 if the player may make any
+     *  sideways move; otherwise CODES_PER_PIECE * i + d + 1, where LAST
+     *  was a sideways move in direction d (0 or 1) by the player's piece
+     *  with the i-th smallest index, which may not immediately return. */
+    static int code(int pieces, long last) {
+        if (last == MoveCode.NONE || MoveCode.isJump(last)) {
+            return 0;
+        }
+        int dir = MoveCode.direction(last, 0);
+        int to = MoveCode.to(last);
+        if (DIR_ROW[dir] != 0 || (pieces & (1 << to)) == 0) {
+            return 0;
+        }
+        return CODES_PER_PIECE * Integer.bitCount(pieces & ((1 << to) - 1))
+            + dir + 1;
+    }
+
+    /** Return the last move denoted by CODE (see code) for the player
+     *  whose pieces are on the squares in PIECES, or MoveCode.NONE if
+     *  there is none.  Returns -1 if CODE denotes a move from off the
+     *  board. */
+    static long lastMove(int pieces, int code) {
+        if (code == 0) {
+            return MoveCode.NONE;
+        }
+        int dir = (code - 1) % CODES_PER_PIECE;
+        int to = select(pieces, (code - 1) / CODES_PER_PIECE);
+        int from = NEIGHBORS[to * NUM_DIRECTIONS + opposite(dir)];
+        if (from == -1) {
+            return -1;
+        }
+        return MoveCode.step(from, dir);
+    }
+
+    /** Return the rank of the set of squares MASK among all sets of the
+     *  same size, in the combinatorial number system.  Sets of the same
+     *  size in increasing numerical order have consecutive ranks. */
+    static int rank(int mask) {
+        int result = 0;
+        for (int i = 1; mask != 0; i += 1, mask &= mask - 1) {
+            result += BINOMIAL[Integer.numberOfTrailingZeros(mask)][i];
+        }
+        return result;
+    }
+
+    /** Return MASK with the bits in OMIT removed and the remaining bits
+     *  shifted down to fill their places. */
+    static int compress(int mask, int omit) {
+        int result = 0;
+        for (int rest = mask; rest != 0; rest &= rest - 1) {
+            int k = Integer.numberOfTrailingZeros(rest);
+            result |= 1 << (k - Integer.bitCount(omit & ((1 << k) - 1)));
+        }
+        return result;
+    }
+
+    /** Return the index of the (I+1)-th smallest bit set in MASK. */
+    static int select(int mask, int i) {
+        for (; i > 0; i -= 1) {
+            mask &= mask - 1;
+        }
+        return Integer.numberOfTrailingZeros(mask);
+    }
+
+    /** Return the sideways direction opposite to sideways direction
+     *  DIR. */
+    private static int opposite(int dir) {
+        return dir ^ 1;
+    }
+
+    /** Return the number of K-element subsets of N things. */
+    static int binomial(int n, int k) {
+        return BINOMIAL[n][k];
+    }
+
+    /** The largest number of pieces in my positions. */
+    private final int _maxPieces;
+    /** _entries[w][b] holds the entries for positions with w white and b
+     *  black pieces. */
+    private final ByteBuffer[][] _entries;
+}
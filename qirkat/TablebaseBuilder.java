@@ -0,0 +1,310 @@
+package qirkat;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static qirkat.PieceColor.*;
+import static qirkat.ValidMoves.*;
+import static qirkat.Tablebase.*;
+
+/** Builds the tables of a Tablebase by retrograde analysis.  Classes of
+ *  positions are built in order of increasing number of pieces, so that
+ *  the results of captures are always known.  Within a class, pass 0
+ *  finds the positions in which the player to move has no moves (and so
+ *  has lost), and pass p > 0 finds those in which the game ends in
+ *  exactly p plies: those with a move to a position lost in p - 1 plies,
+ *  which are won, and those all of whose moves lead to positions won in
+ *  at most p - 1 plies, at least one of them in exactly p - 1, which are
+ *  lost.  When a pass finds nothing and no capture leads to a longer
+ *  ending, the remaining positions are draws.  Each pass is divided among
+ *  the threads of a ForkJoinPool by the positions of the white pieces.
+ *  Each class is written to the file as soon as it is built, and mapped
+ *  back read-only, so that only the class under construction is kept on
+ *  the heap.  An ending longer than Tablebase.MAX_PLIES (254) plies
+ *  cannot be recorded, and stops the build.
+ *
+ *  Usage: java qirkat.TablebaseBuilder N FILE [THREADS] builds the tables
+ *  for all positions with at most N pieces into FILE, using THREADS
+ *  threads (by default, one per processor).  N is at most
+ *  Tablebase.MAX_PIECES, so that each class of positions fits in one
+ *  array.  The heap must hold the largest class, one byte per position
+ *  (see heapNeeded): about 40 MB for N = 5, 350 MB for N = 6, and 2.1 GB
+ *  for N = 7 (java -Xmx3g).
+ *  @author Lily Vittayarukskul
+ */
+class TablebaseBuilder {
+
+    /** A builder of the tables for positions with at most MAXPIECES
+     *  pieces, using THREADS threads. */
+    TablebaseBuilder(int maxPieces, int threads) {
+        if (maxPieces < 2 || maxPieces > MAX_PIECES) {
+            throw new IllegalArgumentException(
+                String.format("number of pieces must be between 2 and %d",
+                              MAX_PIECES));
+        }
+        _maxPieces = maxPieces;
+        _pool = new ForkJoinPool(threads);
+        _entries = new ByteBuffer[maxPieces][maxPieces];
+    }
+
+    /** Build all my tables into the file named NAME, in the form read by
+     *  Tablebase. */
+    void build(String name) throws IOException {
+        try (RandomAccessFile output = new RandomAccessFile(name, "rw");
+             FileChannel channel = output.getChannel()) {
+            output.setLength(0);
+            output.writeInt(MAGIC);
+            output.writeInt(_maxPieces);
+            long offset = HEADER_BYTES;
+            for (int total = 2; total <= _maxPieces; total += 1) {
+                for (int w = 1; w < total; w += 1) {
+                    int b = total - w;
+                    build(w, b);
+                    ByteBuffer built = ByteBuffer.wrap(_current);
+                    while (built.hasRemaining()) {
+                        channel.write(built, offset + built.position());
+                    }
+                    _current = null;
+                    _entries[w][b] =
+                        channel.map(FileChannel.MapMode.READ_ONLY,
+                                    offset, size(w, b));
+                    offset += size(w, b);
+                }
+            }
+        }
+    }
+
+    /** Return the number of bytes of heap needed to build the tables for
+     *  positions with at most MAXPIECES pieces: the size of the largest
+     *  class. */
+    static long heapNeeded(int maxPieces) {
+        long result = 0;
+        for (int w = 1; w < maxPieces; w += 1) {
+            result = Math.max(result, size(w, maxPieces - w));
+        }
+        return result;
+    }
+
+    /** Return the longest ending found so far, in plies. */
+    int longest() {
+        return _longest;
+    }
+
+    /** Build the table for positions with W white and B black pieces,
+     *  assuming that those for fewer pieces are built. */
+    private void build(int w, int b) {
+        _current = new byte[(int) size(w, b)];
+        _whiteSets = subsets(NUM_INDICES, w);
+        _blackSets = subsets(NUM_INDICES - w, b);
+        int longestBefore = _longest;
+        for (int pass = 0; ; pass += 1) {
+            if (pass > MAX_PLIES) {
+                throw new IllegalStateException(
+                    String.format("ending longer than %d plies", MAX_PLIES));
+            }
+            _found.set(0);
+            _pool.invoke(new Pass(w, b, pass, 0, _whiteSets.length));
+            if (_found.get() > 0) {
+                _longest = Math.max(_longest, pass);
+            } else if (pass > longestBefore) {
+                break;
+            }
+        }
+    }
+
+    /** Return all K-element subsets of the first N squares, as masks in
+     *  increasing order, so that each subset's index is its rank (see
+     *  Tablebase.rank). */
+    private static int[] subsets(int n, int k) {
+        int[] result = new int[binomial(n, k)];
+        int mask = (1 << k) - 1;
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = mask;
+            int low = mask & -mask, ripple = mask + low;
+            mask = ripple | (((mask ^ ripple) >>> 2) / low);
+        }
+        return result;
+    }
+
+    /** Return the mask of the squares selected by COMPRESSED from among
+     *  the squares not in OMIT: the inverse of Tablebase.compress. */
+    private static int expand(int compressed, int omit) {
+        int result = 0;
+        for (int k = 0, i = 0; compressed >>> i != 0; k += 1) {
+            if ((omit & (1 << k)) == 0) {
+                if ((compressed & (1 << i)) != 0) {
+                    result |= 1 << k;
+                }
+                i += 1;
+            }
+        }
+        return result;
+    }
+
+    /** One pass over the positions of one class whose white pieces are
+     *  on one of a range of sets of squares. */
+    private class Pass extends RecursiveAction {
+
+        /** Pass PASS over the positions with W white and B black pieces,
+         *  where the white pieces are on sets LO .. HI - 1 of
+         *  _whiteSets. */
+        Pass(int w, int b, int pass, int lo, int hi) {
+            _w = w;
+            _b = b;
+            _pass = pass;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Pass(_w, _b, _pass, _lo, mid),
+                          new Pass(_w, _b, _pass, mid, _hi));
+                return;
+            }
+            byte[] entries = _current;
+            Board board = new Board();
+            MoveList moves = new MoveList();
+            int white = _whiteSets[_lo];
+            int whiteCodes = codes(_w), blackCodes = codes(_b);
+            int i = _lo * _blackSets.length * 2 * whiteCodes * blackCodes;
+            long found = 0;
+            for (int blackSet : _blackSets) {
+                int black = expand(blackSet, white);
+                for (PieceColor next : SIDES) {
+                    for (int wc = 0; wc < whiteCodes; wc += 1) {
+                        for (int bc = 0; bc < blackCodes; bc += 1, i += 1) {
+                            if (entries[i] != DRAW) {
+                                continue;
+                            }
+                            long whiteLast = lastMove(white, wc),
+                                blackLast = lastMove(black, bc);
+                            if (whiteLast == -1 || blackLast == -1) {
+                                continue;
+                            }
+                            board.setPieces(white, black, next,
+                                            whiteLast, blackLast);
+                            int entry = entry(board, moves);
+                            if (entry != DRAW) {
+                                entries[i] = (byte) entry;
+                                found += 1;
+                            }
+                        }
+                    }
+                }
+            }
+            _found.addAndGet(found);
+        }
+
+        /** Return the entry for the position on BOARD found by this
+         *  pass, or DRAW if this pass does not find it.  MOVES is a
+         *  buffer for its moves. */
+        private int entry(Board board, MoveList moves) {
+            moves.clear();
+            board.getMoves(moves);
+            if (_pass == 0) {
+                return moves.isEmpty() ? 1 : DRAW;
+            }
+            int longestWin = -1;
+            boolean allWon = true;
+            for (int k = 0; k < moves.size(); k += 1) {
+                board.makeMove(moves.get(k));
+                int next = probe(board);
+                board.unmakeMove();
+                int plies = next - 1;
+                if (next == DRAW || plies % 2 == 0) {
+                    allWon = false;
+                    if (plies == _pass - 1) {
+                        return _pass + 1;
+                    }
+                } else {
+                    longestWin = Math.max(longestWin, plies);
+                }
+            }
+            if (allWon && longestWin == _pass - 1) {
+                return _pass + 1;
+            }
+            return DRAW;
+        }
+
+        /** Return the entry (possibly one being built) for the position on
+         *  BOARD, which has at most as many pieces of each color as my
+         *  class.  A player with no pieces has lost. */
+        private int probe(Board board) {
+            int white = board.pieces(WHITE), black = board.pieces(BLACK);
+            if (board.pieces(board.whoseMove()) == 0) {
+                return 1;
+            }
+            int w = Integer.bitCount(white), b = Integer.bitCount(black);
+            if (w == _w && b == _b) {
+                return _current[Tablebase.index(board)] & MAX_ENTRY;
+            }
+            return _entries[w][b].get(Tablebase.index(board)) & MAX_ENTRY;
+        }
+
+        /** Numbers of white and black pieces, pass number, and range of
+         *  sets of white squares. */
+        private final int _w, _b, _pass, _lo, _hi;
+    }
+
+    /** Build the tablebase described by ARGS (see the class comment). */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: java qirkat.TablebaseBuilder N FILE"
+                               + " [THREADS]");
+            System.exit(1);
+        }
+        int maxPieces = Integer.parseInt(args[0]);
+        if (maxPieces < 2 || maxPieces > MAX_PIECES) {
+            System.err.printf("N must be between 2 and %d.%n", MAX_PIECES);
+            System.exit(1);
+        }
+        long heap = heapNeeded(maxPieces);
+        if (heap > Runtime.getRuntime().maxMemory()) {
+            System.err.printf("N = %d needs a heap of at least %d MB"
+                              + " (java -Xmx).%n", maxPieces,
+                              (heap >> MB_SHIFT) + 1);
+            System.exit(1);
+        }
+        int threads = args.length > 2 ? Integer.parseInt(args[2])
+            : Runtime.getRuntime().availableProcessors();
+        TablebaseBuilder builder = new TablebaseBuilder(maxPieces, threads);
+        long start = System.currentTimeMillis();
+        builder.build(args[1]);
+        System.out.printf("Built %s in %d msec; longest ending %d plies.%n",
+                          args[1], System.currentTimeMillis() - start,
+                          builder.longest());
+    }
+
+    /** The players, in the order of their positions in a table. */
+    private static final PieceColor[] SIDES = { WHITE, BLACK };
+
+    /** Shift that converts bytes to megabytes. */
+    private static final int MB_SHIFT = 20;
+
+    /** The largest number of pieces in my positions. */
+    private final int _maxPieces;
+    /** The threads that run my passes. */
+    private final ForkJoinPool _pool;
+    /** _entries[w][b] holds the entries for positions with w white and b
+     *  black pieces, once they are built and written, mapped from the
+     *  file. */
+    private final ByteBuffer[][] _entries;
+    /** The entries of the class being built. */
+    private byte[] _current;
+    /** The sets of squares that the white and black pieces of the current
+     *  class may occupy (those of the black pieces compressed as by
+     *  Tablebase.compress). */
+    private int[] _whiteSets, _blackSets;
+    /** Number of positions found by the current pass. */
+    private final AtomicLong _found = new AtomicLong();
+    /** Length of the longest ending found so far, in plies. */
+    private int _longest;
+}
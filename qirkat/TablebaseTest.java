@@ -0,0 +1,112 @@
+package qirkat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.PieceColor.*;
+import static qirkat.Tablebase.*;
+
+/** Tests of the Tablebase and TablebaseBuilder classes.
+ *  @author Lily Vittayarukskul
+ */
+public class TablebaseTest {
+
+    /** Return a tablebase for positions with at most three pieces. */
+    private static Tablebase build() throws IOException {
+        File file = File.createTempFile("qirkat", ".tb");
+        file.deleteOnExit();
+        TablebaseBuilder builder = new TablebaseBuilder(3, 2);
+        builder.build(file.getPath());
+        return new Tablebase(file);
+    }
+
+    @Test
+    public void testIndex() {
+        Board b = new Board();
+        b.setPieces("w---- ----- ----- --b-- -----", BLACK);
+        Board b1 = new Board();
+        b1.setPieces(b.pieces(WHITE), b.pieces(BLACK), BLACK,
+                     MoveCode.NONE, MoveCode.NONE);
+        assertEquals(b.hashKey(), b1.hashKey());
+        boolean[] seen = new boolean[(int) Tablebase.size(1, 1)];
+        for (int w = 0; w < ValidMoves.NUM_INDICES; w += 1) {
+            for (int k = 0; k < ValidMoves.NUM_INDICES; k += 1) {
+                if (k == w) {
+                    continue;
+                }
+                for (PieceColor next : new PieceColor[] { WHITE, BLACK }) {
+                    int i = Tablebase.index(1 << w, 1 << k, next, 0, 0);
+                    assertFalse(seen[i]);
+                    seen[i] = true;
+                }
+            }
+        }
+        b.makeMove(MoveCode.parse("c4-d4"));
+        int code = Tablebase.code(b.pieces(BLACK), b.lastMove(BLACK));
+        assertNotEquals(0, code);
+        assertEquals(b.lastMove(BLACK),
+                     Tablebase.lastMove(b.pieces(BLACK), code));
+    }
+
+    @Test
+    public void testLimits() {
+        long largest = 0, tooLarge = 0;
+        for (int w = 1; w < MAX_PIECES; w += 1) {
+            largest = Math.max(largest, size(w, MAX_PIECES - w));
+        }
+        for (int w = 1; w <= MAX_PIECES; w += 1) {
+            tooLarge = Math.max(tooLarge, size(w, MAX_PIECES + 1 - w));
+        }
+        assertTrue(largest <= MAX_CLASS_SIZE);
+        assertTrue(tooLarge > MAX_CLASS_SIZE);
+        assertEquals(largest, TablebaseBuilder.heapNeeded(MAX_PIECES));
+        try {
+            new TablebaseBuilder(MAX_PIECES + 1, 1);
+            fail("builder accepted too many pieces");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testProbe() throws IOException {
+        Tablebase table = build();
+        Board b = new Board();
+        b.setPieces("----- ----- --w-- --b-- -----", WHITE);
+        assertEquals(2, table.probe(b));
+        assertEquals(MoveCode.parse("c3-c5"), table.bestMove(b));
+        Random random = new Random(1);
+        Board next = new Board();
+        for (int n = 0; n < 2000; n += 1) {
+            int white = 1 << random.nextInt(ValidMoves.NUM_INDICES);
+            int black;
+            do {
+                black = 1 << random.nextInt(ValidMoves.NUM_INDICES)
+                    | 1 << random.nextInt(ValidMoves.NUM_INDICES);
+            } while ((black & white) != 0);
+            b.setPieces(white, black, random.nextBoolean() ? WHITE : BLACK,
+                        MoveCode.NONE, MoveCode.NONE);
+            int best = Integer.MIN_VALUE;
+            MoveList moves = b.legalMoves();
+            for (int i = 0; i < moves.size(); i += 1) {
+                next.copy(b);
+                next.makeMove(moves.get(i));
+                best = Math.max(best, -Tablebase.value(table.probe(next)));
+            }
+            int entry = table.probe(b);
+            if (moves.isEmpty()) {
+                assertEquals(1, entry);
+            } else if (best == 0) {
+                assertEquals(Tablebase.DRAW, entry);
+            } else {
+                int plies = Tablebase.MAX_ENTRY + 1 - Math.abs(best);
+                assertEquals(plies + 2, entry);
+                assertEquals(best > 0, entry % 2 == 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package qirkat;
+
+/** A fixed-size table of the results of searching positions, keyed by
+ *  their hash keys.  Each entry records the depth to which its position
+ *  was searched, the score found, whether that score is exact or only a
+ *  bound, and the best move found (as a code; see MoveCode).  Qirkat's
+ *  sideways moves reach the same position by many paths, and the table
+ *  lets a search reuse the work done along the first of them.
+ *
+ *  The number of entries is a power of two, so that a key's entry is
+ *  found by masking.  A new result replaces the one already in its entry
+ *  unless that one is from the same search and is deeper.
+ *
+ *  Any number of threads may use a table at once without locking.  Each
+ *  entry's key is stored exclusive-or'ed with its move and data, so an
+ *  entry that is read while another thread is writing it (and so is a
+ *  mixture of two entries) almost certainly fails to match any key, and
+ *  is treated as absent.  Moves found in a table should therefore be
+ *  checked for legality before use, as should anything found by hashing.
+ *  @author Lily Vittayarukskul
+ */
+class TranspositionTable {
+
+    /** Bound types: the score recorded is a lower bound on the true
+     *  score, an upper bound, or (both) exact. */
+    static final int LOWER = 1, UPPER = 2, EXACT = LOWER | UPPER;
+
+    /** Default size of a table, in megabytes. */
+    static final int DEFAULT_MEGABYTES = 16;
+
+    /** Bytes taken by one entry: a key, a move, and the other data. */
+    private static final int ENTRY_BYTES = 3 * Long.BYTES;
+
+    /** Positions and widths of the fields packed into an entry's data
+     *  (the score takes the low-order Integer.SIZE bits). */
+    private static final int DEPTH_SHIFT = Integer.SIZE, DEPTH_BITS = 8,
+        BOUND_SHIFT = DEPTH_SHIFT + DEPTH_BITS, BOUND_BITS = 2,
+        AGE_SHIFT = BOUND_SHIFT + BOUND_BITS, AGE_BITS = 8;
+
+    /** Masks for the fields of an entry's data. */
+    private static final int DEPTH_MASK = (1 << DEPTH_BITS) - 1,
+        BOUND_MASK = (1 << BOUND_BITS) - 1, AGE_MASK = (1 << AGE_BITS) - 1;
+
+    /** The largest number of entries in a table. */
+    private static final int MAX_ENTRIES = 1 << 30;
+
+    /** One megabyte. */
+    private static final long MEGABYTE = 1 << 20;
+
+    /** Multiplier used to mix a move code into a key. */
+    private static final long MIX = 0x9e3779b97f4a7c15L;
+
+    /** A table occupying about MEGABYTES megabytes (at least one
+     *  entry). */
+    TranspositionTable(int megabytes) {
+        long entries = megabytes * MEGABYTE / ENTRY_BYTES;
+        int size =
+            Integer.highestOneBit((int) Math.max(1, Math.min(entries,
+                                                             MAX_ENTRIES)));
+        _keys = new long[size];
+        _moves = new long[size];
+        _data = new long[size];
+        _mask = size - 1;
+    }
+
+    /** Return the key under which the position on BOARD is stored.  This
+     *  is BOARD's hash key, changed when the player to move is forbidden
+     *  to reverse its last move, since the legal moves then differ. */
+    static long key(Board board) {
+        long last = board.lastMove(board.whoseMove());
+        if (last == MoveCode.NONE || MoveCode.isJump(last)) {
+            return board.hashKey();
+        }
+        return board.hashKey() ^ (last * MIX);
+    }
+
+    /** Return the number of entries in me. */
+    int size() {
+        return _keys.length;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        for (int i = 0; i < _keys.length; i += 1) {
+            _keys[i] = _moves[i] = _data[i] = 0;
+        }
+    }
+
+    /** Start a new search.  Entries from earlier searches are kept, but
+     *  give way to any new result. */
+    void newSearch() {
+        _age = (_age + 1) & AGE_MASK;
+    }
+
+    /** Return the data recorded for KEY, or 0 if there is none.  The
+     *  fields of a nonzero result are given by depth(), bound(), and
+     *  score(). */
+    long probe(long key) {
+        int i = (int) key & _mask;
+        long data = _data[i];
+        return (_keys[i] ^ _moves[i] ^ data) == key ? data : 0;
+    }
+
+    /** Return the best move recorded for KEY, or MoveCode.NONE if there is
+     *  none. */
+    long move(long key) {
+        int i = (int) key & _mask;
+        long move = _moves[i];
+        return (_keys[i] ^ move ^ _data[i]) == key ? move : MoveCode.NONE;
+    }
+
+    /** Record that the position with key KEY, searched to DEPTH, has a
+     *  score SCORE of the given BOUND type, with MOVE the best move found
+     *  (MoveCode.NONE if none).  Does nothing if the entry for KEY holds a
+     *  deeper result for another position from the current search. */
+    void store(long key, int depth, int bound, int score, long move) {
+        int i = (int) key & _mask;
+        long old = _data[i], oldMove = _moves[i];
+        if ((_keys[i] ^ oldMove ^ old) == key) {
+            if (move == MoveCode.NONE) {
+                move = oldMove;
+            }
+        } else if (old != 0 && age(old) == _age && depth(old) > depth) {
+            return;
+        }
+        long data = Integer.toUnsignedLong(score)
+            | ((long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) _age << AGE_SHIFT);
+        _keys[i] = key ^ move ^ data;
+        _moves[i] = move;
+        _data[i] = data;
+    }
+
+    /** Return the depth field of the nonzero entry data DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the bound type (LOWER, UPPER, or EXACT) of the nonzero entry
+     *  data DATA. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the score field of the nonzero entry data DATA. */
+    static int score(long data) {
+        return (int) data;
+    }
+
+    /** Return the search number in which DATA was stored. */
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & AGE_MASK;
+    }
+
+    /** The keys (exclusive-or'ed with the moves and data), best moves, and
+     *  packed data of my entries. */
+    private final long[] _keys, _moves, _data;
+    /** The mask selecting an entry index from a key. */
+    private final int _mask;
+    /** The number of the current search, modulo 2 ** AGE_BITS. */
+    private volatile int _age;
+}
@@ -0,0 +1,97 @@
+package qirkat;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static qirkat.TranspositionTable.*;
+
+/** Tests of the TranspositionTable class.
+ *  @author Lily Vittayarukskul
+ */
+public class TranspositionTableTest {
+
+    @Test
+    public void testSize() {
+        assertEquals(1, new TranspositionTable(0).size());
+        int size = new TranspositionTable(1).size();
+        assertEquals(Integer.highestOneBit(size), size);
+        assertTrue(size * 3 * Long.BYTES <= 1 << 20);
+    }
+
+    @Test
+    public void testStoreProbe() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key = new Board().hashKey(),
+            mov = MoveCode.parse("c2-c3");
+        assertEquals(0, table.probe(key));
+        assertEquals(MoveCode.NONE, table.move(key));
+        table.store(key, 4, LOWER, -17, mov);
+        long data = table.probe(key);
+        assertEquals(4, depth(data));
+        assertEquals(LOWER, bound(data));
+        assertEquals(-17, score(data));
+        assertEquals(mov, table.move(key));
+        assertEquals(0, table.probe(key + table.size()));
+        table.store(key, 2, EXACT, 3, MoveCode.NONE);
+        assertEquals(EXACT, bound(table.probe(key)));
+        assertEquals(mov, table.move(key));
+    }
+
+    @Test
+    public void testReplacement() {
+        TranspositionTable table = new TranspositionTable(1);
+        long key1 = 1, key2 = key1 + table.size();
+        table.store(key1, 5, EXACT, 1, MoveCode.NONE);
+        table.store(key2, 3, EXACT, 2, MoveCode.NONE);
+        assertEquals(1, score(table.probe(key1)));
+        assertEquals(0, table.probe(key2));
+        table.store(key2, 5, EXACT, 2, MoveCode.NONE);
+        assertEquals(2, score(table.probe(key2)));
+        table.newSearch();
+        table.store(key1, 1, UPPER, 3, MoveCode.NONE);
+        assertEquals(3, score(table.probe(key1)));
+        assertEquals(0, table.probe(key2));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        TranspositionTable table = new TranspositionTable(0);
+        boolean[] bad = new boolean[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t += 1) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random keys = new Random(seed);
+                for (int i = 0; i < 100000; i += 1) {
+                    long key = keys.nextLong() | 1;
+                    table.store(key, (int) key & 63, EXACT, (int) (key >> 7),
+                                key >>> 8);
+                    long data = table.probe(key);
+                    if (data != 0 && (score(data) != (int) (key >> 7)
+                                      || depth(data) != ((int) key & 63))) {
+                        bad[0] = true;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(bad[0]);
+    }
+
+    @Test
+    public void testReversalKey() {
+        Board b0 = new Board();
+        b0.setPieces("----- ----- --w-- ----- ----b", PieceColor.WHITE);
+        b0.makeMove(MoveCode.parse("c3-d3"));
+        b0.makeMove(MoveCode.parse("e5-d5"));
+        Board b1 = new Board();
+        b1.setPieces("----- ----- ---w- ----- ---b-", PieceColor.WHITE);
+        assertEquals(b1.hashKey(), b0.hashKey());
+        assertNotEquals(key(b1), key(b0));
+    }
+}
@@ -11,7 +11,14 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         System.exit(textui.runClasses(MoveTest.class, BoardTest.class,
-                                      CommandTest.class));
+                                      CommandTest.class,
+                                      TranspositionTableTest.class,
+                                      MoveOrderingTest.class,
+                                      ParallelSearchTest.class,
+                                      TablebaseTest.class,
+                                      OpeningBookTest.class,
+                                      EvaluatorTest.class,
+                                      MonteCarloSearchTest.class));
     }
 
 }
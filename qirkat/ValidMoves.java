@@ -1,203 +1,188 @@
-
 package qirkat;
 
-import java.util.HashMap;
+import static qirkat.Move.SIDE;
+import static qirkat.PieceColor.*;
 
-/** All ValidMoves relative to player type and move type.
+/** All ValidMoves relative to player type and move type.  The geometry
+ *  tables are derived once from the size of the board and indexed
+ *  directly by linearized index, so that move generation does no boxing
+ *  or hashing.
  *  @author Lily Vittayarukskul
  */
 public class ValidMoves {
 
-    /**Max number of indices.*/
-    private static final int NUM_INDICES = 25;
-
-    /**All possible capture moves per linearized index key.*/
-    private static final int[][] JUMP_MOVES_LIST = {
-            {5, 10, 6, 12, 1, 2},
-            {6, 11, 2, 3},
-            {1, 0, 6, 10, 7, 12, 8, 14, 3, 4},
-            {2, 1, 8, 13},
-            {9, 14, 8, 12, 3, 2},
-            {10, 15, 6, 7},
-            {11, 16, 12, 18, 7, 8},
-            {6, 5, 12, 17, 8, 9 },
-            {7, 6, 12, 16, 13, 18},
-            {8, 7, 14, 19},
-            {5, 0, 6, 2, 11, 12, 16, 22, 15, 20},
-            {6, 1, 12, 13, 16, 21},
-            {6, 0, 11, 10, 16, 20, 17, 22,
-            18, 24, 13, 14, 8, 4, 7, 2},
-            {8, 3, 12, 11, 18, 23},
-            {9, 4, 8, 2, 13, 12, 18, 22, 19, 24},
-            {10, 5, 16, 17},
-            {11, 6, 12, 8, 17, 18},
-            {16, 15, 12, 7, 18, 19},
-            {17, 16, 12, 6, 13, 8},
-            {18, 17, 14, 9},
-            {15, 10, 16, 12, 21, 22},
-            {16, 11, 22, 23},
-            {21, 20, 16, 10, 17, 12, 18, 14, 23, 24},
-            {22, 21, 18, 13},
-            {23, 22, 18, 12, 19, 14}
-    };
-
-    /**All possible non-capture moves per
-     * linearized index key for BLACK player.*/
-    private static final int[][] BLACK_MOVES = {
-            {},
-            {},
-            {},
-            {},
-            {},
-            {0, 6},
-            {5, 1, 7, 0, 2},
-            {6, 2, 8},
-            {7, 3, 9, 2, 4},
-            {8, 4},
-            {5, 11, 6},
-            {10, 6, 12},
-            {11, 7, 13, 6, 8},
-            {12, 8, 14},
-            {13, 9, 8},
-            {10, 16},
-            {15, 11, 17, 10, 12},
-            {16, 12, 18},
-            {17, 13, 19, 12, 14},
-            {18, 14},
-            {15, 21, 16},
-            {20, 16, 22},
-            {21, 17, 23, 16, 18},
-            {22, 18, 24},
-            {23, 19, 18}
-    };
-
-    /**All possible non-capture moves per
-     * linearized index key for WHITE player.*/
-    private static final int[][] WHITE_MOVES = {
-            {5, 1, 6},
-            {0, 6, 2},
-            {1, 7, 3, 6, 8},
-            {2, 8, 4},
-            {3, 9, 8},
-            {10, 6},
-            {5, 11, 7, 10, 12},
-            {6, 12, 8},
-            {7, 13, 9, 12, 14},
-            {8, 14},
-            {15, 11, 16},
-            {10, 16, 12},
-            {11, 17, 13, 16, 18},
-            {12, 18, 14},
-            {13, 19, 18},
-            {20, 16},
-            {15, 21, 17, 20, 22},
-            {16, 22, 18},
-            {17, 23, 19, 22, 24},
-            {18, 24},
-            {},
-            {},
-            {},
-            {},
-            {}
-    };
-
-    /** Fill in all the HashMaps.*/
-    ValidMoves() {
-        getJumpmoves(jumpMoves);
-        getBlackmoves(nonJumpMovesBLACK);
-        getWhitemoves(nonJumpMovesWHITE);
+    /** Not instantiable. */
+    private ValidMoves() {
     }
 
-    /** Set index 0 to be WHITE last move and 1 as
-     * BLACK last move.*/
-    private static Move[] lastMoves = new Move[2];
-
-    /** Return last move of the current player given COLOR.*/
-    public Move getLastMove(PieceColor color) {
-        if (color.equals(PieceColor.WHITE)) {
-            return lastMoves[0];
-        } else {
-            return lastMoves[1];
+    /** Max number of indices. */
+    static final int NUM_INDICES = SIDE * SIDE;
+
+    /** Number of directions in which a piece may move or capture. */
+    static final int NUM_DIRECTIONS = 8;
+
+    /** Column and row offsets of the directions, which are numbered 0 to
+     *  NUM_DIRECTIONS - 1.  The first four are orthogonal.  The last four
+     *  are diagonal, and are available only from squares whose column and
+     *  row numbers have an even sum. */
+    static final int[]
+        DIR_COL = { 1, -1, 0, 0, 1, -1, 1, -1 },
+        DIR_ROW = { 0, 0, 1, -1, 1, 1, -1, -1 };
+
+    /** NEIGHBORS[k * NUM_DIRECTIONS + d] is the linearized index of the
+     *  square adjacent to square k in direction d, or -1 if there is none.
+     *  Likewise, LANDINGS gives the square two steps away, where a
+     *  capture in direction d lands. */
+    static final int[]
+        NEIGHBORS = new int[NUM_INDICES * NUM_DIRECTIONS],
+        LANDINGS = new int[NUM_INDICES * NUM_DIRECTIONS];
+
+    /** All possible non-capture moves per linearized index for each
+     *  player: WHITE_STEPS[k] lists the squares to which a white piece on
+     *  square k may move without capturing. */
+    static final int[][]
+        WHITE_STEPS = new int[NUM_INDICES][],
+        BLACK_STEPS = new int[NUM_INDICES][];
+
+    /** The directions of the moves in WHITE_STEPS and BLACK_STEPS:
+     *  WHITE_STEP_DIRS[k][i] is the direction from k to WHITE_STEPS[k][i].
+     */
+    static final int[][]
+        WHITE_STEP_DIRS = new int[NUM_INDICES][],
+        BLACK_STEP_DIRS = new int[NUM_INDICES][];
+
+    /** The squares in WHITE_STEPS[k] and BLACK_STEPS[k] as masks. */
+    static final int[]
+        WHITE_STEP_MASKS = new int[NUM_INDICES],
+        BLACK_STEP_MASKS = new int[NUM_INDICES];
+
+    /** All possible captures per linearized index, for either player: a
+     *  piece on square k may capture a piece on JUMP_OVER[k][i], landing
+     *  on JUMP_TO[k][i]. */
+    static final int[][]
+        JUMP_OVER = new int[NUM_INDICES][],
+        JUMP_TO = new int[NUM_INDICES][];
+
+    /** JUMP_DIRS[k][i] is the direction of the capture from k over
+     *  JUMP_OVER[k][i]. */
+    static final int[][] JUMP_DIRS = new int[NUM_INDICES][];
+
+    /** The squares in JUMP_OVER[k] and JUMP_TO[k] as masks. */
+    static final int[]
+        JUMP_OVER_MASKS = new int[NUM_INDICES],
+        JUMP_TO_MASKS = new int[NUM_INDICES];
+
+    static {
+        for (int k = 0; k < NUM_INDICES; k += 1) {
+            for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+                NEIGHBORS[k * NUM_DIRECTIONS + d] = offset(k, d, 1);
+                LANDINGS[k * NUM_DIRECTIONS + d] = offset(k, d, 2);
+            }
+            WHITE_STEP_DIRS[k] = stepDirections(k, 1);
+            BLACK_STEP_DIRS[k] = stepDirections(k, -1);
+            WHITE_STEPS[k] = neighbors(k, WHITE_STEP_DIRS[k]);
+            BLACK_STEPS[k] = neighbors(k, BLACK_STEP_DIRS[k]);
+            WHITE_STEP_MASKS[k] = mask(WHITE_STEPS[k]);
+            BLACK_STEP_MASKS[k] = mask(BLACK_STEPS[k]);
+            int n;
+            n = 0;
+            for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+                if (LANDINGS[k * NUM_DIRECTIONS + d] != -1) {
+                    n += 1;
+                }
+            }
+            JUMP_DIRS[k] = new int[n];
+            JUMP_OVER[k] = new int[n];
+            JUMP_TO[k] = new int[n];
+            n = 0;
+            for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+                if (LANDINGS[k * NUM_DIRECTIONS + d] != -1) {
+                    JUMP_DIRS[k][n] = d;
+                    JUMP_OVER[k][n] = NEIGHBORS[k * NUM_DIRECTIONS + d];
+                    JUMP_TO[k][n] = LANDINGS[k * NUM_DIRECTIONS + d];
+                    n += 1;
+                }
+            }
+            JUMP_OVER_MASKS[k] = mask(JUMP_OVER[k]);
+            JUMP_TO_MASKS[k] = mask(JUMP_TO[k]);
         }
     }
 
-    /** Set last move of current player given COLOR AND MOVE.*/
-    public void setLastMove(PieceColor color, Move move) {
-        if (color.equals(PieceColor.WHITE)) {
-            lastMoves[0] = move;
-        } else {
-            lastMoves[1] = move;
+    /** Return the linearized index of the square DIST squares from square
+     *  K in direction D, or -1 if that is off the board or D is a diagonal
+     *  not available from K. */
+    private static int offset(int k, int d, int dist) {
+        int c = k % SIDE, r = k / SIDE;
+        if (d >= NUM_DIRECTIONS / 2 && (c + r) % 2 != 0) {
+            return -1;
         }
+        c += DIR_COL[d] * dist;
+        r += DIR_ROW[d] * dist;
+        if (c < 0 || c >= SIDE || r < 0 || r >= SIDE) {
+            return -1;
+        }
+        return c + r * SIDE;
     }
 
-    /** Return an integer array referring to all possible moves
-     * at a linearized INDEX key given a HASHMAP.*/
-    public int[] get(HashMap<Integer, int[]> hashMap, int index) {
-        int[] moves = (int[]) hashMap.get(index);
-        return moves;
-    }
-
-    /** Return a hashmap for all possible captures.*/
-    public HashMap<Integer, int[]> jumpMoves() {
-        return jumpMoves;
-    }
-
-    /** Return a hashmap for all possible non-capture moves per
-     * linearized index key for BLACK player.*/
-    public HashMap<Integer, int[]> nonJumpMovesBLACK() {
-        return nonJumpMovesBLACK;
+    /** Return the directions in which a piece on square K whose forward
+     *  direction is FORWARD (1 for up, -1 for down) may move without
+     *  capturing: sideways or forward.  A piece on its last row may not
+     *  move except to capture. */
+    private static int[] stepDirections(int k, int forward) {
+        int lastRow = forward > 0 ? SIDE - 1 : 0;
+        int n;
+        if (k / SIDE == lastRow) {
+            return new int[0];
+        }
+        n = 0;
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            if (DIR_ROW[d] != -forward
+                && NEIGHBORS[k * NUM_DIRECTIONS + d] != -1) {
+                n += 1;
+            }
+        }
+        int[] result = new int[n];
+        n = 0;
+        for (int d = 0; d < NUM_DIRECTIONS; d += 1) {
+            if (DIR_ROW[d] != -forward
+                && NEIGHBORS[k * NUM_DIRECTIONS + d] != -1) {
+                result[n] = d;
+                n += 1;
+            }
+        }
+        return result;
     }
 
-    /** Return a hashmap for all possible non-capture moves per
-     * linearized index key for WHITE player.*/
-    public HashMap<Integer, int[]> nonJumpMovesWHITE() {
-        return nonJumpMovesWHITE;
+    /** Return the squares adjacent to K in each of the directions DIRS. */
+    private static int[] neighbors(int k, int[] dirs) {
+        int[] result = new int[dirs.length];
+        for (int i = 0; i < dirs.length; i += 1) {
+            result[i] = NEIGHBORS[k * NUM_DIRECTIONS + dirs[i]];
+        }
+        return result;
     }
 
-    /** Create a HASHMAP for all possible jumps, where key is
-     * linearized index and value is in format of opponent
-     * index and index of index after jump. For example,
-     * for key value 0, the opponent to be jumped is
-     * at value 5, followed by position to jump to, value 10.*/
-    private void getJumpmoves(HashMap<Integer, int[]> hashMap) {
-        int index;
-        for (index = 0; index < NUM_INDICES; index++) {
-            hashMap.put(index, JUMP_MOVES_LIST[index]);
+    /** Return a mask with the bits at the indices in SQUARES set. */
+    private static int mask(int[] squares) {
+        int result = 0;
+        for (int k : squares) {
+            result |= 1 << k;
         }
-
+        return result;
     }
 
-    /** Create a HASHMAP for all possible non-capture moves per
-     * linearized index key for BLACK player.*/
-    public void getBlackmoves(HashMap<Integer, int[]> hashMap) {
-        int index;
-        for (index = 0; index < NUM_INDICES; index++) {
-            hashMap.put(index, BLACK_MOVES[index]);
-        }
+    /** Return the table of non-capture moves for player COLOR. */
+    static int[][] steps(PieceColor color) {
+        return color == WHITE ? WHITE_STEPS : BLACK_STEPS;
     }
 
-    /** Create a HASHMAP for all possible non-capture moves per
-     * linearized index key for WHITE player.*/
-    public void getWhitemoves(HashMap<Integer, int[]> hashMap) {
-        int index;
-        for (index = 0; index < NUM_INDICES; index++) {
-            hashMap.put(index, WHITE_MOVES[index]);
-        }
+    /** Return the directions of the non-capture moves for player COLOR. */
+    static int[][] stepDirections(PieceColor color) {
+        return color == WHITE ? WHITE_STEP_DIRS : BLACK_STEP_DIRS;
     }
 
-    /** A hashmap for all possible jumps, where key is
-     * linearized index and value is in format of opponent
-     * index and index of index after jump. For example,
-     * for key value 0, the opponent to be jumped is
-     * at value 5, followed by position to jump to, value 10.*/
-    private HashMap<Integer, int[]> jumpMoves = new HashMap<>();
-
-    /** A hashmap for all possible non-capture moves per
-     * linearized index key for WHITE player.*/
-    private HashMap<Integer, int[]> nonJumpMovesWHITE = new HashMap<>();
-
-    /** A hashmap for all possible non-capture moves per
-     * linearized index key for BLACK player.*/
-    private HashMap<Integer, int[]> nonJumpMovesBLACK =
-            new HashMap<>();
+    /** Return the table of non-capture move masks for player COLOR. */
+    static int[] stepMasks(PieceColor color) {
+        return color == WHITE ? WHITE_STEP_MASKS : BLACK_STEP_MASKS;
+    }
 }